@@ -0,0 +1,133 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+// BatchScanner
+//
+// Scans many files in one JVM.  Every file gets its own Yylex, and the
+// token dump and messages of each file are collected in memory, so the
+// files can be scanned on a work-stealing pool while the output still
+// appears in the order the files were named.  A directory stands for all
+// .sim files below it, in path order.
+//
+// Each file's output is preceded by a "==> name <==" line on stdout,
+// and on stderr too if scanning the file produced any messages.
+
+class BatchScanner {
+	// files scanned ahead of the one being written, per thread
+	private static final int AHEAD = 4;
+
+	// result of scanning one file
+	private static class Result {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final ByteArrayOutputStream err = new ByteArrayOutputStream();
+		boolean failed;
+	}
+
+	// Scans the files and directories named in opts and writes the
+	// results to stdout and stderr.  Returns the exit status for P2.
+	static int run(ScanOptions opts, OutputStream stdout, PrintStream stderr) {
+		if (opts.binary) {
+			stderr.println("-binary takes one file");
+			return -1;
+		}
+		int threads = opts.threads;
+		List<Path> files = new ArrayList<Path>();
+		try {
+			for (String name : opts.files)
+				collect(Paths.get(name), opts, files);
+		} catch (IOException ex) {
+			stderr.println("could not list " + ex.getMessage());
+			return -1;
+		}
+
+		ExecutorService pool = Executors.newWorkStealingPool(threads);
+		ArrayDeque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+		OutputStream out = new BufferedOutputStream(stdout, 1 << 16);
+		int status = 0;
+		int next = 0;
+		try {
+			for (Path file : files) {
+				while (next < files.size() && pending.size() < AHEAD * threads) {
+					Path f = files.get(next++);
+					pending.add(pool.submit(() -> scan(f, opts)));
+				}
+				Result r = pending.remove().get();
+				byte[] header = ("==> " + file + " <==" + System.lineSeparator()).getBytes(opts.output);
+				out.write(header);
+				r.out.writeTo(out);
+				if (r.err.size() > 0) {
+					out.flush();
+					stderr.write(header);
+					r.err.writeTo(stderr);
+					stderr.flush();
+				}
+				if (r.failed)
+					status = -1;
+			}
+			out.flush();
+		} catch (IOException | InterruptedException | ExecutionException ex) {
+			stderr.println("batch scan failed: " + ex);
+			status = -1;
+		} finally {
+			pool.shutdownNow();
+		}
+		return status;
+	}
+
+	// Adds path to files, or all .sim files below it if it is a directory.
+	// The files are added as named, not resolved against opts.dir.
+	private static void collect(Path path, ScanOptions opts, List<Path> files) throws IOException {
+		Path dir = opts.resolve(path);
+		if (!Files.isDirectory(dir)) {
+			files.add(path);
+			return;
+		}
+		List<Path> found = new ArrayList<Path>();
+		try (Stream<Path> walk = Files.walk(dir)) {
+			walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".sim"))
+					.forEach(p -> found.add(path.resolve(dir.relativize(p))));
+		}
+		Collections.sort(found);
+		files.addAll(found);
+	}
+
+	// Scans one file with its own scanner, capturing all of its output.
+	private static Result scan(Path file, ScanOptions opts) {
+		Result r = new Result();
+		TokenWriter out = new TokenWriter(r.out, opts.output);
+		PrintStream err = new PrintStream(r.err, true, opts.output);
+		try {
+			if (opts.decode) {
+				P2.decode(file.toString(), opts, out, err);
+			} else if (opts.cache != null) {
+				P2.scanCached(file.toString(), opts, out, err);
+			} else {
+				Yylex scanner = P2.open(file.toString(), opts);
+				P2.setUp(scanner, opts, file.toString(), err);
+				try {
+					P2.scan(scanner, opts, out, err);
+				} finally {
+					scanner.yyclose();
+				}
+			}
+		} catch (FileNotFoundException | NoSuchFileException ex) {
+			err.println("File " + file + " not found.");
+			r.failed = true;
+		} catch (IOException ex) {
+			err.println("unexpected IOException thrown by the scanner");
+			r.failed = true;
+		} catch (Error ex) {
+			// the scanner gives up with an Error when it cannot match the input
+			err.println(ex);
+			r.failed = true;
+		}
+		out.flush();
+		return r;
+	}
+}
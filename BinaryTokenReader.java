@@ -0,0 +1,175 @@
+import java.io.*;
+import java.util.Arrays;
+
+// BinaryTokenReader
+//
+// Reads a token stream written by BinaryTokenWriter, one token at a time:
+//     BinaryTokenReader in = new BinaryTokenReader(stream);
+//     while (in.next())
+//         ... in.kind(), in.line(), in.column(), in.intValue(), in.text()
+// The stream is checked against this program's sym table; a stream of
+// another format or sym table, or one cut short, gives an IOException.
+// Reading a token allocates nothing, except for a text seen for the
+// first time.
+
+class BinaryTokenReader {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+	private final byte[] buf = new byte[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+
+	private String[] table = new String[1024];
+	private int tableSize;
+
+	private final String[] kinds = new String[64];
+
+	private int kind;
+	private int line;
+	private int column;
+	private int value;
+	private String text;
+	private boolean done;
+
+	// Reads and checks the header of in.
+	BinaryTokenReader(InputStream in) throws IOException {
+		this.in = in;
+		byte[] magic = new byte[BinaryTokenWriter.MAGIC.length];
+		for (int i = 0; i < magic.length; i++)
+			magic[i] = (byte) get();
+		if (!Arrays.equals(magic, BinaryTokenWriter.MAGIC))
+			throw new IOException("not a binary token stream");
+		int format = get();
+		if (format != BinaryTokenWriter.FORMAT)
+			throw new IOException("binary token stream of unknown format " + format);
+		int version = get() << 24 | get() << 16 | get() << 8 | get();
+		for (int n = varint(); n > 0; n--) {
+			int code = varint();
+			char[] name = new char[varint()];
+			for (int i = 0; i < name.length; i++)
+				name[i] = (char) get();
+			if (code >= 0 && code < kinds.length)
+				kinds[code] = new String(name);
+		}
+		if (version != BinaryTokenWriter.SYM_VERSION)
+			throw new IOException("binary token stream written with another sym table");
+	}
+
+	// Reads the next token.  Returns false at the end of the stream.
+	boolean next() throws IOException {
+		if (done)
+			return false;
+		kind = get();
+		if (kind == sym.EOF) {
+			done = true;
+			return false;
+		}
+		int dl = unzigzag(varint());
+		int dc = unzigzag(varint());
+		column = dl == 0 ? column + dc : dc;
+		line += dl;
+		text = null;
+		if (kind == sym.INTLITERAL) {
+			value = unzigzag(varint());
+		} else if (kind == sym.ID || kind == sym.STRINGLITERAL) {
+			int ref = varint();
+			if (ref == 0)
+				text = readText();
+			else if (ref > 0 && ref <= tableSize)
+				text = table[ref - 1];
+			else
+				throw new IOException("bad text reference in binary token stream");
+		}
+		return true;
+	}
+
+	// a sym code
+	int kind() {
+		return kind;
+	}
+
+	int line() {
+		return line;
+	}
+
+	int column() {
+		return column;
+	}
+
+	// value of an INTLITERAL token
+	int intValue() {
+		return value;
+	}
+
+	// text of an ID or STRINGLITERAL token
+	String text() {
+		return text;
+	}
+
+	// the name the stream gives kind, or null
+	String kindName(int kind) {
+		return kind >= 0 && kind < kinds.length ? kinds[kind] : null;
+	}
+
+	// Reads all tokens into tokens, which interns the names of IDs in
+	// tokens.ids() (a new IdTable if it has none).
+	void readAll(TokenBuffer tokens) throws IOException {
+		if (tokens.ids() == null)
+			tokens.setIds(new IdTable());
+		IdTable ids = tokens.ids();
+		while (next()) {
+			int v = value;
+			if (kind == sym.ID) {
+				char[] name = text.toCharArray();
+				v = ids.intern(name, 0, name.length);
+			} else if (kind == sym.STRINGLITERAL) {
+				v = tokens.addText(text);
+			}
+			tokens.add(kind, line, column, v);
+		}
+	}
+
+	private String readText() throws IOException {
+		int len = varint();
+		if (len < 0)
+			throw new IOException("bad text length in binary token stream");
+		StringBuilder s = new StringBuilder(Math.min(len, BUFFER_SIZE));
+		for (int i = 0; i < len; i++)
+			s.append((char) varint());
+		String t = s.toString();
+		if (tableSize < BinaryTokenWriter.TABLE_LIMIT) {
+			if (tableSize == table.length)
+				table = Arrays.copyOf(table, 2 * tableSize);
+			table[tableSize++] = t;
+		}
+		return t;
+	}
+
+	private static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private int varint() throws IOException {
+		int n = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = get();
+			n |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return n;
+		}
+		throw new IOException("bad varint in binary token stream");
+	}
+
+	private int get() throws IOException {
+		if (pos == limit) {
+			limit = in.read(buf, 0, BUFFER_SIZE);
+			pos = 0;
+			if (limit <= 0) {
+				limit = 0;
+				throw new EOFException("binary token stream cut short");
+			}
+		}
+		return buf[pos++] & 0xff;
+	}
+}
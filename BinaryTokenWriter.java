@@ -0,0 +1,262 @@
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// BinaryTokenWriter
+//
+// Writes a token stream in a compact binary form (P2 -binary), for tools
+// that would otherwise parse the text dump.  BinaryTokenReader reads it
+// back; P2 -decode prints it as the text dump the scan would have
+// printed.
+//
+// Format:
+//
+//   header    the bytes "STOK", a format version byte, the int (big
+//             endian) SYM_VERSION, then the sym table: a count and per
+//             constant its code and its name (ASCII, with its length)
+//   tokens    per token its kind byte, then the line as the difference
+//             to the line of the token before, and the character number
+//             as the difference to the one before if the line is the
+//             same and as is otherwise; then the value: for INTLITERAL
+//             the literal, for ID and STRINGLITERAL a text reference
+//   end       the kind byte of sym.EOF
+//
+// All numbers but the version are varints: 7 bits a byte, low bits
+// first, the high bit set on all bytes but the last.  Differences and
+// literals, which may be negative, are zigzag encoded first (0, -1, 1,
+// -2, ... as 0, 1, 2, 3, ...).  A text reference is 0 for a text that
+// follows, as its length and its chars (each a varint, so ASCII takes a
+// byte), or n for the n-th text that followed so far.  Identifiers and
+// string literals share the table; once it holds TABLE_LIMIT texts, new
+// texts still follow in full but are not added to it.
+//
+// SYM_VERSION is a CRC-32 of the names and codes of the sym constants, so
+// a stream is only read with the sym table it was written with.
+
+class BinaryTokenWriter {
+	static final byte[] MAGIC = { 'S', 'T', 'O', 'K' };
+	static final int FORMAT = 1;
+
+	// the names of the sym constants by code, and their CRC-32
+	static final String[] KINDS = new String[64];
+	static final int SYM_VERSION;
+
+	// texts interned at most, by writer and reader alike
+	static final int TABLE_LIMIT = 1 << 20;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	static {
+		String[] names = new String[64];
+		int n = 0;
+		try {
+			for (Field f : sym.class.getFields()) {
+				if (Modifier.isStatic(f.getModifiers()) && f.getType() == int.class) {
+					KINDS[f.getInt(null)] = f.getName();
+					names[n++] = f.getName() + "=" + f.getInt(null);
+				}
+			}
+		} catch (IllegalAccessException ex) {
+			// sym's fields are public
+		}
+		// getFields() has no particular order
+		names = Arrays.copyOf(names, n);
+		Arrays.sort(names);
+		CRC32 crc = new CRC32();
+		for (String name : names)
+			crc.update((name + "\n").getBytes());
+		SYM_VERSION = (int) crc.getValue();
+	}
+
+	private final OutputStream out;
+	private final byte[] buf = new byte[BUFFER_SIZE];
+	private int count;
+
+	private final Map<String, Integer> table = new HashMap<String, Integer>();
+
+	// for add(TokenBuffer): the table reference of each id of idTable, 0
+	// if none yet
+	private IdTable idTable;
+	private int[] idRefs = new int[0];
+
+	private int line;
+	private int column;
+
+	// Writes the header to out.
+	BinaryTokenWriter(OutputStream out) throws IOException {
+		this.out = out;
+		bytes(MAGIC);
+		put(FORMAT);
+		put(SYM_VERSION >>> 24);
+		put(SYM_VERSION >>> 16);
+		put(SYM_VERSION >>> 8);
+		put(SYM_VERSION);
+		int kinds = 0;
+		for (String name : KINDS) {
+			if (name != null)
+				kinds++;
+		}
+		varint(kinds);
+		for (int kind = 0; kind < KINDS.length; kind++) {
+			if (KINDS[kind] != null) {
+				varint(kind);
+				varint(KINDS[kind].length());
+				bytes(KINDS[kind].getBytes("US-ASCII"));
+			}
+		}
+	}
+
+	// Writes every token of scanner up to EOF, and the end of the stream.
+	// If the scanner fails, the tokens before are still written, but the
+	// end is not, so a reader can tell.
+	void write(Yylex scanner) throws IOException {
+		try {
+			tokens(scanner);
+			put(sym.EOF);
+		} finally {
+			flush();
+		}
+	}
+
+	private void tokens(Yylex scanner) throws IOException {
+		for (int kind = scanner.advance(); kind != sym.EOF; kind = scanner.advance()) {
+			switch (kind) {
+				case sym.ID:
+				case sym.STRINGLITERAL:
+					token(scanner.line(), scanner.column(), kind, scanner.text());
+					break;
+				case sym.INTLITERAL:
+					token(scanner.line(), scanner.column(), kind, scanner.intValue());
+					break;
+				default:
+					token(scanner.line(), scanner.column(), kind);
+			}
+		}
+	}
+
+	// Writes every token in tokens, and the end of the stream.
+	void write(TokenBuffer tokens) throws IOException {
+		add(tokens);
+		finish();
+	}
+
+	// Writes every token in tokens.  The names of ID tokens are looked up
+	// by id rather than by text.
+	void add(TokenBuffer tokens) throws IOException {
+		if (tokens.ids() != idTable) {
+			idTable = tokens.ids();
+			idRefs = new int[0];
+		}
+		for (int i = 0; i < tokens.size(); i++) {
+			int kind = tokens.kind(i);
+			switch (kind) {
+				case sym.ID:
+					int id = tokens.id(i);
+					if (id >= idRefs.length)
+						idRefs = Arrays.copyOf(idRefs, Math.max(id + 1, 2 * idRefs.length));
+					if (idRefs[id] != 0) {
+						position(kind, tokens.line(i), tokens.column(i));
+						varint(idRefs[id]);
+					} else {
+						token(tokens.line(i), tokens.column(i), kind, tokens.text(i));
+						Integer ref = table.get(tokens.text(i).toString());
+						if (ref != null)
+							idRefs[id] = ref;
+					}
+					break;
+				case sym.INTLITERAL:
+					token(tokens.line(i), tokens.column(i), kind, tokens.intValue(i));
+					break;
+				case sym.STRINGLITERAL:
+					token(tokens.line(i), tokens.column(i), kind, tokens.text(i));
+					break;
+				default:
+					token(tokens.line(i), tokens.column(i), kind);
+			}
+		}
+	}
+
+	// Writes a token without a value.
+	void token(int line, int column, int kind) throws IOException {
+		position(kind, line, column);
+	}
+
+	// Writes an INTLITERAL.
+	void token(int line, int column, int kind, int value) throws IOException {
+		position(kind, line, column);
+		varint(zigzag(value));
+	}
+
+	// Writes an ID or STRINGLITERAL.
+	void token(int line, int column, int kind, CharSequence text) throws IOException {
+		position(kind, line, column);
+		String s = text.toString();
+		Integer ref = table.get(s);
+		if (ref != null) {
+			varint(ref);
+			return;
+		}
+		varint(0);
+		varint(s.length());
+		for (int i = 0; i < s.length(); i++)
+			varint(s.charAt(i));
+		if (table.size() < TABLE_LIMIT)
+			table.put(s, table.size() + 1);
+	}
+
+	// Writes the end of the stream and flushes it.
+	void finish() throws IOException {
+		put(sym.EOF);
+		flush();
+	}
+
+	// Writes out what is buffered, without ending the stream.
+	void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	private void position(int kind, int line, int column) throws IOException {
+		if (BUFFER_SIZE - count < 11)
+			drain();
+		buf[count++] = (byte) kind;
+		varint(zigzag(line - this.line));
+		varint(zigzag(line == this.line ? column - this.column : column));
+		this.line = line;
+		this.column = column;
+	}
+
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private void varint(int n) throws IOException {
+		if (BUFFER_SIZE - count < 5)
+			drain();
+		while ((n & ~0x7f) != 0) {
+			buf[count++] = (byte) (n | 0x80);
+			n >>>= 7;
+		}
+		buf[count++] = (byte) n;
+	}
+
+	private void put(int b) throws IOException {
+		if (count == BUFFER_SIZE)
+			drain();
+		buf[count++] = (byte) b;
+	}
+
+	private void bytes(byte[] b) throws IOException {
+		for (byte x : b)
+			put(x);
+	}
+
+	private void drain() throws IOException {
+		out.write(buf, 0, count);
+		count = 0;
+	}
+}
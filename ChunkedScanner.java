@@ -0,0 +1,358 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+// ChunkedScanner
+//
+// Scans one large file on several threads (P2 -split).  The file is cut
+// into chunks of about chunkSize bytes, each ending after a \n, and each
+// chunk is scanned by a Yylex of its own.  No token contains a \n except
+// in the STRING and COMMENT states, so a chunk starts between tokens in
+// one of the three lexical states; which one is only known once the
+// chunk before has been scanned.  Each chunk is therefore scanned
+// speculatively once per state, and a sequential pass takes the chunks
+// in order, picks the scan for the state the chunk before ended in and
+// fixes it up:
+//
+//   lines     a chunk counts its lines from 1; the line ends of the
+//             chunks before are added (a prefix sum)
+//   columns   until the first column reset in a chunk (see Yylex), its
+//             columns are off by the same amount: the column the chunk
+//             starts at, less 1
+//   strings   a scan started in STRING has the rest of a literal begun
+//             in an earlier chunk; its first token gets that literal's
+//             column and text, and the columns after it are corrected
+//             for the characters of the literal that were not skewed
+//
+// Diagnostics are fixed up the same way and reported in order, so the
+// output is the same as that of one Yylex over the whole file, unclosed
+// comments and literals spanning several chunks included.
+//
+// The scans for NORMAL, the state nearly every chunk starts in, are run
+// first; the others run when a thread has nothing else to do, and are
+// cancelled, or stopped at the next refill, once the pass knows they are
+// not needed.  A scan that is needed but was not started is run by the
+// pass itself.  At most two chunks per thread are scanned ahead of the
+// pass.  Speculation only pays with a processor per thread: on fewer,
+// the scans that are thrown away take time from the pass.
+//
+// Chunks are decoded on their own, so the charset must not use the
+// byte \n inside a character; for other charsets (UTF-16, say) the
+// file is one chunk.  Metrics are not kept.
+
+class ChunkedScanner {
+	private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+	// chunks scanned ahead of the pass, per thread
+	private static final int AHEAD = 2;
+
+	// receives the tokens of each chunk, in order, fixed up
+	interface Sink {
+		void tokens(TokenBuffer tokens) throws IOException;
+	}
+
+	// a scan of one chunk from one start state, and what it left behind
+	private static class Piece implements Diagnostics.Listener {
+		final int state;
+		volatile boolean unwanted;   // the scan may stop
+		final TokenBuffer tokens = new TokenBuffer();
+		final List<Report> reports = new ArrayList<Report>();
+		Yylex scanner;
+		Error failure;
+
+		int chars;
+		int lineEnds;
+		int resetToken;   // tokens before the first column reset, or -1
+		boolean reset;
+		int endColumn;    // the column of the character after the chunk
+		int endState;
+		int stringStart;  // if endState is STRING: the open literal
+		int stringColumn;
+		String stringText;
+
+		Piece(int state) {
+			this.state = state;
+		}
+
+		public void report(boolean error, int line, int column, String message, char[] chars, int start, int len) {
+			Report r = new Report();
+			r.error = error;
+			r.line = line;
+			r.column = column;
+			r.message = message;
+			r.detail = chars == null ? null : Arrays.copyOfRange(chars, start, start + len);
+			r.reset = scanner.columnResets() > 0;
+			reports.add(r);
+		}
+	}
+
+	private static class Report {
+		boolean error;
+		int line;
+		int column;
+		String message;
+		char[] detail;
+		boolean reset;   // the column was reset before
+	}
+
+	// a pending scan; scans for NORMAL come first, then by chunk
+	private static class Scan extends FutureTask<Piece> implements Comparable<Scan> {
+		final int chunk;
+		final int state;
+		final Piece piece;
+
+		Scan(Callable<Piece> scan, int chunk, Piece piece) {
+			super(scan);
+			this.chunk = chunk;
+			this.state = piece.state;
+			this.piece = piece;
+		}
+
+		// Drops the scan, or if it has started, makes it stop soon.
+		void drop() {
+			piece.unwanted = true;
+			cancel(false);
+		}
+
+		public int compareTo(Scan o) {
+			boolean normal = state == Yylex.NORMAL;
+			if (normal != (o.state == Yylex.NORMAL))
+				return normal ? -1 : 1;
+			if (chunk != o.chunk)
+				return Integer.compare(chunk, o.chunk);
+			return Integer.compare(state, o.state);
+		}
+	}
+
+	private final String fileName;
+	private final Charset charset;
+	private final int threads;
+	private final long chunkSize;
+
+	// where the chunks start, and the end of the file
+	private long[] bounds;
+
+	// the state of the pass at the start of the next chunk: its lexical
+	// state, its first line, offset and column, and the open literal
+	private int state = Yylex.NORMAL;
+	private int line = 1;
+	private int offset;
+	private int column = 1;
+	private int quote;
+	private int quoteColumn;
+	private StringBuilder literal;
+
+	// Scans fileName, decoded with charset, in chunks of about chunkSize
+	// bytes on threads threads.
+	ChunkedScanner(String fileName, Charset charset, int threads, long chunkSize) {
+		this.fileName = fileName;
+		this.charset = charset;
+		this.threads = Math.max(threads, 1);
+		this.chunkSize = Math.max(chunkSize, 1);
+	}
+
+	// Scans the file, passing the tokens to sink a chunk at a time and
+	// reporting the diagnostics to diagnostics.  If the scanner fails, the
+	// tokens and diagnostics before the failure are passed on, and then
+	// its Error is thrown.
+	void scan(Diagnostics diagnostics, Sink sink) throws IOException {
+		bounds = split();
+		int chunks = bounds.length - 1;
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>());
+		ArrayDeque<Scan[]> pending = new ArrayDeque<Scan[]>();
+		int next = 0;
+		try {
+			for (int k = 0; k < chunks; k++) {
+				while (next < chunks && next < k + AHEAD * threads)
+					pending.add(submit(pool, next++));
+				Scan[] scans = pending.remove();
+				Scan needed = null;
+				for (Scan s : scans) {
+					if (s == null)
+						continue;
+					if (s.state == state)
+						needed = s;
+					else
+						s.drop();
+				}
+				needed.run();   // unless a thread has started it
+				stitch(result(needed), diagnostics, sink);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// Queues the scans of chunk k: from NORMAL only for the first chunk,
+	// from every state for the others.
+	private Scan[] submit(ThreadPoolExecutor pool, int k) {
+		int[] states = k == 0 ? new int[] { Yylex.NORMAL } : new int[] { Yylex.NORMAL, Yylex.STRING, Yylex.COMMENT };
+		Scan[] scans = new Scan[states.length];
+		for (int i = 0; i < states.length; i++) {
+			Piece p = new Piece(states[i]);
+			scans[i] = new Scan(() -> scanChunk(k, p), k, p);
+			pool.execute(scans[i]);
+		}
+		return scans;
+	}
+
+	private static Piece result(Scan scan) throws IOException {
+		try {
+			return scan.get();
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("scan interrupted");
+		}
+	}
+
+	// Scans chunk k from the lexical state of p, into p.  An unwanted
+	// scan ends at the next refill.
+	private Piece scanChunk(int k, Piece p) throws IOException {
+		Reader in = new MappedReader(fileName, bounds[k], bounds[k + 1], charset);
+		Yylex scanner = new Yylex(new Reader() {
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				if (p.unwanted)
+					return -1;
+				int n = in.read(cbuf, off, len);
+				if (n > 0)
+					p.chars += n;
+				return n;
+			}
+
+			public void close() throws IOException {
+				in.close();
+			}
+		});
+		Diagnostics diagnostics = new Diagnostics(DISCARD);
+		diagnostics.max = 0;
+		diagnostics.listener = p;
+		scanner.setDiagnostics(diagnostics);
+		p.scanner = scanner;
+		scanner.yybegin(p.state);
+		try {
+			scanner.scanAll(p.tokens);
+		} catch (Error ex) {
+			// "could not match input"; only an error if this scan is needed
+			p.failure = ex;
+		} finally {
+			scanner.yyclose();
+		}
+		p.lineEnds = scanner.lines().last() - 1;
+		p.resetToken = scanner.resetToken();
+		p.reset = scanner.columnResets() > 0;
+		p.endColumn = scanner.columnAt(p.chars);
+		p.endState = scanner.yystate();
+		if (p.endState == Yylex.STRING) {
+			// nothing resets the column within a literal
+			p.stringStart = scanner.stringStart();
+			p.stringColumn = scanner.columnAt(p.stringStart);
+			p.stringText = scanner.stringText().toString();
+		}
+		p.scanner = null;
+		return p;
+	}
+
+	// Fixes up the scan of the next chunk, passes it on and moves the pass
+	// past it.
+	private void stitch(Piece p, Diagnostics diagnostics, Sink sink) throws IOException {
+		TokenBuffer tokens = p.tokens;
+		int delta = column - 1;
+		boolean closes = p.state == Yylex.STRING && tokens.size() > 0;
+		int resetToken = p.resetToken < 0 ? tokens.size() : p.resetToken;
+		if (closes) {
+			// the chunk's scan took the literal to start at the chunk and
+			// skewed the columns after it by that much
+			delta -= offset - quote - literal.length();
+		}
+		tokens.move(0, resetToken, line - 1, delta);
+		tokens.move(resetToken, tokens.size(), line - 1, 0);
+		if (closes) {
+			tokens.setColumn(0, quoteColumn);
+			tokens.setText(0, literal.append(tokens.text(0)).toString());
+		}
+		for (Report r : p.reports) {
+			diagnostics.report(r.error, r.line + line - 1, r.reset ? r.column : r.column + delta, r.message,
+					r.detail, 0, r.detail == null ? 0 : r.detail.length);
+		}
+		sink.tokens(tokens);
+		if (p.failure != null)
+			throw p.failure;
+
+		if (p.endState == Yylex.STRING) {
+			if (p.state == Yylex.STRING && !closes) {
+				literal.append(p.stringText);
+			} else {
+				quote = offset + p.stringStart;
+				quoteColumn = p.reset ? p.stringColumn : p.stringColumn + delta;
+				literal = new StringBuilder(p.stringText);
+			}
+		} else {
+			literal = null;
+		}
+		state = p.endState;
+		line += p.lineEnds;
+		offset += p.chars;
+		column = p.reset ? p.endColumn : p.endColumn + delta;
+	}
+
+	// Returns where the chunks start, followed by the size of the file.
+	private long[] split() throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+			long size = channel.size();
+			long[] bounds = new long[16];
+			int n = 1;
+			if (splittable(charset)) {
+				ByteBuffer buf = ByteBuffer.allocate(1 << 12);
+				for (long at = bounds[0] + chunkSize; at < size; at = bounds[n - 1] + chunkSize) {
+					long start = afterNewline(channel, at, buf);
+					if (start >= size)
+						break;
+					if (n + 1 == bounds.length)
+						bounds = Arrays.copyOf(bounds, 2 * n);
+					bounds[n++] = start;
+				}
+			}
+			bounds[n++] = size;
+			return Arrays.copyOf(bounds, n);
+		}
+	}
+
+	// Returns the offset after the first \n at or after at, or the size
+	// of the file if there is none.
+	private static long afterNewline(FileChannel channel, long at, ByteBuffer buf) throws IOException {
+		while (true) {
+			buf.clear();
+			int n = channel.read(buf, at);
+			if (n <= 0)
+				return channel.size();
+			for (int i = 0; i < n; i++) {
+				if (buf.get(i) == '\n')
+					return at + i + 1;
+			}
+			at += n;
+		}
+	}
+
+	// whether cs never uses the byte \n inside a character, so a chunk
+	// can be decoded on its own
+	private static boolean splittable(Charset cs) {
+		return cs.equals(StandardCharsets.UTF_8) || cs.newEncoder().maxBytesPerChar() == 1
+				&& Arrays.equals("\n".getBytes(cs), new byte[] { '\n' });
+	}
+}
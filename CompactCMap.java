@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// CompactCMap
+//
+// Rewrites the scanner generated by JFlex 1.7 to use a two-level
+// character map.  JFlex unpacks ZZ_CMAP into one char per code point,
+// 0x110000 of them (2.2 MB), when Yylex is loaded, although Simple only
+// tells apart ASCII characters and a few line separators.  The rewritten
+// scanner splits the code points into blocks of 256; ZZ_CMAP_TOP gives
+// the block number of every block, and ZZ_CMAP_BLOCKS holds each
+// different block once, so the character class of c is
+//     ZZ_CMAP_BLOCKS[(ZZ_CMAP_TOP[c >> 8] << 8) | (c & 0xff)]
+// or just ZZ_CMAP_BLOCKS[c] for c < 256, the common case.
+// The blocks are unpacked from the same ZZ_CMAP_PACKED string, without
+// ever building the flat map.
+//
+// The Makefile runs it on every file jflex writes:
+//     java CompactCMap Yylex.java simple.jlex.java
+// It fails if the generated code does not look as expected, e.g. after
+// a change of JFlex version.
+
+class CompactCMap {
+	private static final String DECLARATION =
+		"   * Translates characters to character classes\n"
+		+ "   */\n"
+		+ "  private static final char [] ZZ_CMAP = zzUnpackCMap(ZZ_CMAP_PACKED);\n";
+
+	private static final String TWO_LEVEL =
+		"   * Translates blocks of 256 characters to their entries in\n"
+		+ "   * ZZ_CMAP_BLOCKS (two-level character map, see CompactCMap)\n"
+		+ "   */\n"
+		+ "  private static final char [] ZZ_CMAP_TOP = new char[0x1100];\n"
+		+ "\n"
+		+ "  /** \n"
+		+ "   * Translates characters to character classes, one block of 256\n"
+		+ "   * characters after the other\n"
+		+ "   */\n"
+		+ "  private static final char [] ZZ_CMAP_BLOCKS = zzUnpackCMap(ZZ_CMAP_PACKED, ZZ_CMAP_TOP);\n";
+
+	private static final String UNPACK_START = "  private static char [] zzUnpackCMap(String packed) {\n";
+
+	private static final String UNPACK =
+		"  /** \n"
+		+ "   * Unpacks the compressed character translation table into blocks\n"
+		+ "   * of 256 entries, storing the number of each block in top.\n"
+		+ "   *\n"
+		+ "   * @param packed   the packed character translation table\n"
+		+ "   * @param top      receives the block number of every block\n"
+		+ "   * @return         the different blocks\n"
+		+ "   */\n"
+		+ "  private static char [] zzUnpackCMap(String packed, char [] top) {\n"
+		+ "    char [] blocks = new char[4 << 8];\n"
+		+ "    int count = 0;       /* number of different blocks */\n"
+		+ "    char [] block = new char[256];\n"
+		+ "    int uniformValue = -1;  /* value and number of the last block */\n"
+		+ "    int uniformBlock = 0;   /* that was filled by one run         */\n"
+		+ "    int j = 0;           /* code point */\n"
+		+ "    for (int i = 0; i < packed.length(); i += 2) {\n"
+		+ "      int run = packed.charAt(i);\n"
+		+ "      char value = packed.charAt(i + 1);\n"
+		+ "      while (run > 0) {\n"
+		+ "        if ((j & 0xff) == 0 && run >= 256 && value == uniformValue) {\n"
+		+ "          top[j >> 8] = (char) uniformBlock;\n"
+		+ "          j += 256;\n"
+		+ "          run -= 256;\n"
+		+ "          continue;\n"
+		+ "        }\n"
+		+ "        boolean uniform = (j & 0xff) == 0 && run >= 256;\n"
+		+ "        int n = Math.min(run, 256 - (j & 0xff));\n"
+		+ "        java.util.Arrays.fill(block, j & 0xff, (j & 0xff) + n, value);\n"
+		+ "        j += n;\n"
+		+ "        run -= n;\n"
+		+ "        if ((j & 0xff) != 0)\n"
+		+ "          continue;\n"
+		+ "        /* block complete: find it or add it */\n"
+		+ "        int b = 0;\n"
+		+ "        while (b < count && !java.util.Arrays.equals(blocks, b << 8, (b + 1) << 8, block, 0, 256))\n"
+		+ "          b++;\n"
+		+ "        if (b == count) {\n"
+		+ "          if (count << 8 == blocks.length)\n"
+		+ "            blocks = java.util.Arrays.copyOf(blocks, blocks.length * 2);\n"
+		+ "          System.arraycopy(block, 0, blocks, count << 8, 256);\n"
+		+ "          count++;\n"
+		+ "        }\n"
+		+ "        top[(j >> 8) - 1] = (char) b;\n"
+		+ "        if (uniform) {\n"
+		+ "          uniformValue = value;\n"
+		+ "          uniformBlock = b;\n"
+		+ "        }\n"
+		+ "      }\n"
+		+ "    }\n"
+		+ "    return java.util.Arrays.copyOf(blocks, count << 8);\n"
+		+ "  }\n";
+
+	private static final String LOCAL = "    char [] zzCMapL = ZZ_CMAP;\n";
+
+	private static final String LOCALS =
+		"    char [] zzCMapTopL = ZZ_CMAP_TOP;\n"
+		+ "    char [] zzCMapBlocksL = ZZ_CMAP_BLOCKS;\n";
+
+	private static final String LOOKUP = "zzCMapL[zzInput]";
+
+	// the first block is block 0, so c < 256 needs no ZZ_CMAP_TOP lookup
+	private static final String TWO_LEVEL_LOOKUP =
+		"zzCMapBlocksL[zzInput < 256 ? zzInput : (zzCMapTopL[zzInput >> 8] << 8) | (zzInput & 0xff)]";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: java CompactCMap Yylex.java output.java");
+			System.exit(-1);
+		}
+		String text = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.ISO_8859_1);
+		text = replace(text, DECLARATION, TWO_LEVEL);
+		text = replace(text, LOCAL, LOCALS);
+		text = replace(text, LOOKUP, TWO_LEVEL_LOOKUP);
+
+		// the old unpacking method, with its doc comment
+		int start = text.indexOf(UNPACK_START);
+		if (start < 0)
+			fail("zzUnpackCMap");
+		start = text.lastIndexOf("  /** \n", start);
+		int end = text.indexOf("\n  }\n", start) + "\n  }\n".length();
+		text = text.substring(0, start) + UNPACK + text.substring(end);
+
+		Files.write(Paths.get(args[1]), text.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	// Replaces the only occurrence of from in text by to.
+	private static String replace(String text, String from, String to) {
+		int i = text.indexOf(from);
+		if (i < 0 || text.indexOf(from, i + 1) >= 0)
+			fail(from.trim());
+		return text.substring(0, i) + to + text.substring(i + from.length());
+	}
+
+	private static void fail(String what) {
+		System.err.println("CompactCMap: cannot find " + what + " in the generated scanner");
+		System.exit(-1);
+	}
+}
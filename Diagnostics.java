@@ -0,0 +1,239 @@
+import java.io.PrintStream;
+
+// Diagnostics
+//
+// Collects the warnings and errors of one scan and writes them to a
+// stream in chunks of several KB, instead of one println each.  By
+// default a diagnostic looks like the lines Errors prints:
+//     3:14 **ERROR** ignoring illegal character: $
+// With json set, each is a JSON object on a line of its own:
+//     {"file":"a.sim","severity":"error","line":3,"column":14,
+//      "message":"ignoring illegal character","detail":"$"}
+//
+// With coalesce set, a diagnostic with the same severity and message as
+// the one before, at the column right after it, is merged into it: a
+// run of illegal characters gives one line, with the characters as its
+// detail and "count", "endLine" and "endColumn" in JSON.  If max is
+// set (P2 -maxdiags), at most max diagnostics are written, and the
+// number of the others is reported at the end.  Once the limit is
+// reached a diagnostic costs a counter increment, so scanning a large
+// file that is not Simple at all takes about as long as scanning a
+// program.  Lines end with the platform's line separator, as the
+// tokens TokenWriter writes do.
+//
+// Until flush() is called, output is only written a chunk at a time.
+// A listener, if set, is told of every diagnostic as it is reported
+// (TokenCache keeps them this way).
+
+class Diagnostics {
+	private static final int CHUNK = 1 << 13;
+
+	// at most this many characters of a merged detail are kept
+	private static final int DETAIL_LIMIT = 40;
+
+	private static final String NEWLINE = System.lineSeparator();
+
+	// no limit on the diagnostics written
+	static final int NO_MAX = Integer.MAX_VALUE;
+
+	private final PrintStream err;
+	private final String file;
+	boolean json;
+	boolean coalesce;
+	int max = NO_MAX;
+
+	// is told of every diagnostic reported
+	interface Listener {
+		void report(boolean error, int line, int column, String message, char[] chars, int start, int len);
+	}
+
+	Listener listener;
+
+	private final StringBuilder buf = new StringBuilder();
+	private long reported;    // all diagnostics, merged or not
+	private int shown;        // diagnostics written or pending
+	private long suppressed;  // diagnostics over max
+
+	// the last diagnostic, not written yet, so the next can be merged in
+	private boolean pending;
+	private boolean error;
+	private String message;
+	private final StringBuilder detail = new StringBuilder();
+	private boolean truncated;
+	private int line;
+	private int column;
+	private int endColumn;
+	private int count;
+
+	Diagnostics(PrintStream err) {
+		this(err, null);
+	}
+
+	// file is the name JSON output gives, or null
+	Diagnostics(PrintStream err, String file) {
+		this.err = err;
+		this.file = file;
+	}
+
+	// Creates the diagnostics of P2's options for one file.
+	static Diagnostics of(ScanOptions opts, PrintStream err, String file) {
+		Diagnostics d = new Diagnostics(err, file);
+		d.json = opts.json;
+		d.coalesce = opts.coalesce;
+		d.max = opts.maxDiagnostics;
+		return d;
+	}
+
+	void warn(int line, int column, String message) {
+		report(false, line, column, message, null, 0, 0);
+	}
+
+	void fatal(int line, int column, String message) {
+		report(true, line, column, message, null, 0, 0);
+	}
+
+	// An error about the characters chars[start .. start+len-1], which are
+	// printed after the message.
+	void fatal(int line, int column, String message, char[] chars, int start, int len) {
+		report(true, line, column, message, chars, start, len);
+	}
+
+	// number of diagnostics reported, including merged and left out ones
+	long count() {
+		return reported;
+	}
+
+	// Reports an error or warning, with chars[start .. start+len-1] as its
+	// detail unless chars is null.
+	void report(boolean error, int line, int column, String message, char[] chars, int start, int len) {
+		reported++;
+		if (listener != null)
+			listener.report(error, line, column, message, chars, start, len);
+		if (coalesce && pending && error == this.error && line == this.line
+				&& column == endColumn + 1 && message.equals(this.message)) {
+			endColumn = column;
+			count++;
+			appendDetail(chars, start, len);
+			return;
+		}
+		if (shown >= max) {
+			suppressed++;
+			return;
+		}
+		if (pending)
+			write();
+		pending = true;
+		shown++;
+		this.error = error;
+		this.line = line;
+		this.column = column;
+		this.endColumn = column;
+		this.message = message;
+		count = 1;
+		detail.setLength(0);
+		truncated = false;
+		appendDetail(chars, start, len);
+	}
+
+	private void appendDetail(char[] chars, int start, int len) {
+		if (chars == null)
+			return;
+		int n = Math.min(len, DETAIL_LIMIT - detail.length());
+		detail.append(chars, start, n);
+		if (n < len)
+			truncated = true;
+	}
+
+	// Writes all diagnostics collected so far, and if this is the end of
+	// the scan, the number left out.
+	void flush() {
+		if (pending)
+			write();
+		pending = false;
+		if (suppressed > 0) {
+			if (json) {
+				buf.append('{');
+				fileField();
+				buf.append("\"severity\":\"note\",\"message\":\"diagnostics left out\",\"count\":")
+						.append(suppressed).append('}').append(NEWLINE);
+			} else {
+				buf.append(suppressed).append(" more diagnostics left out (at most ").append(max)
+						.append(" are shown)").append(NEWLINE);
+			}
+			suppressed = 0;
+		}
+		drain();
+		err.flush();
+	}
+
+	private void write() {
+		if (json)
+			writeJson();
+		else
+			writeText();
+		if (buf.length() >= CHUNK)
+			drain();
+	}
+
+	private void writeText() {
+		buf.append(line).append(':').append(column).append(error ? " **ERROR** " : " **WARNING** ")
+				.append(message);
+		if (detail.length() > 0 || truncated) {
+			buf.append(": ").append(detail);
+			if (truncated)
+				buf.append("...");
+		}
+		if (count > 1)
+			buf.append(" (").append(count).append(" times, through ").append(line).append(':')
+					.append(endColumn).append(')');
+		buf.append(NEWLINE);
+	}
+
+	private void writeJson() {
+		buf.append('{');
+		fileField();
+		buf.append("\"severity\":\"").append(error ? "error" : "warning").append("\",\"line\":").append(line)
+				.append(",\"column\":").append(column).append(",\"message\":");
+		quote(message);
+		if (detail.length() > 0 || truncated) {
+			buf.append(",\"detail\":");
+			quote(detail);
+			if (truncated)
+				buf.append(",\"truncated\":true");
+		}
+		if (count > 1)
+			buf.append(",\"count\":").append(count).append(",\"endLine\":").append(line)
+					.append(",\"endColumn\":").append(endColumn);
+		buf.append('}').append(NEWLINE);
+	}
+
+	private void fileField() {
+		if (file != null) {
+			buf.append("\"file\":");
+			quote(file);
+			buf.append(',');
+		}
+	}
+
+	// Appends s as a JSON string.
+	private void quote(CharSequence s) {
+		buf.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				buf.append('\\').append(c);
+			else if (c < 0x20 || c == 0x7f || Character.isSurrogate(c))
+				buf.append(String.format("\\u%04x", (int) c));
+			else
+				buf.append(c);
+		}
+		buf.append('"');
+	}
+
+	private void drain() {
+		if (buf.length() == 0)
+			return;
+		err.print(buf);
+		buf.setLength(0);
+	}
+}
@@ -1,6 +1,8 @@
 // Errors
 //
 // This class is used to generate warning and fatal error messages.
+// The scanner itself reports through Diagnostics, which prints the same
+// lines, collected and written in chunks.
 
 class Errors {
     static void fatal(int lineNum, int charNum, String msg) {
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+// IdTable
+//
+// Interns identifiers.  Every distinct name gets a small int id, handed
+// out in order of first appearance and stable for the life of the table.
+// Lookups hash the characters straight out of the scanner's buffer; a
+// String is made only the first time a name is seen, or, after
+// useSlices(), not at all: the name is kept as a TextSlice of the buffer
+// it was found in.
+//
+// The table uses open addressing with linear probing and is kept at
+// most half full.
+
+class IdTable {
+	private int[] slots = new int[256];   // id + 1, or 0 if empty
+	private int[] hashes = new int[128];  // hash of each id's name
+	private CharSequence[] names = new CharSequence[128];
+	private int size;
+	private boolean slices;
+
+	// number of distinct names
+	int size() {
+		return size;
+	}
+
+	CharSequence name(int id) {
+		return names[id];
+	}
+
+	// Keeps new names as slices of the buffers passed to intern, which
+	// must then never change.
+	void useSlices() {
+		slices = true;
+	}
+
+	// Returns the id of the name in buf[start .. start+len-1], adding it
+	// if it is new.
+	int intern(char[] buf, int start, int len) {
+		int h = hash(buf, start, len);
+		int mask = slots.length - 1;
+		for (int i = h & mask; ; i = (i + 1) & mask) {
+			int slot = slots[i];
+			if (slot == 0)
+				return add(i, h, slices ? new TextSlice(buf, start, len) : new String(buf, start, len));
+			int id = slot - 1;
+			if (hashes[id] == h && matches(names[id], buf, start, len))
+				return id;
+		}
+	}
+
+	private int add(int slot, int h, CharSequence name) {
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+			hashes = Arrays.copyOf(hashes, size * 2);
+		}
+		int id = size++;
+		names[id] = name;
+		hashes[id] = h;
+		slots[slot] = id + 1;
+		if (size * 2 > slots.length)
+			rehash();
+		return id;
+	}
+
+	private void rehash() {
+		int[] newSlots = new int[slots.length * 2];
+		int mask = newSlots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int i = hashes[id] & mask;
+			while (newSlots[i] != 0)
+				i = (i + 1) & mask;
+			newSlots[i] = id + 1;
+		}
+		slots = newSlots;
+	}
+
+	private static int hash(char[] buf, int start, int len) {
+		int h = 0;
+		for (int i = start; i < start + len; i++)
+			h = 31 * h + buf[i];
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean matches(CharSequence name, char[] buf, int start, int len) {
+		if (name.length() != len)
+			return false;
+		for (int i = 0; i < len; i++) {
+			if (name.charAt(i) != buf[start + i])
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,269 @@
+import java.io.*;
+import java.util.Arrays;
+import java_cup.runtime.Symbol;
+
+// IncrementalLexer
+//
+// Keeps the text of a document together with its tokens and brings the
+// tokens up to date after an edit without rescanning the whole text.
+//
+// Every token ends in the NORMAL state, so the scanner can be restarted
+// at the end of any token from just its line and column.  An edit is
+// rescanned from the end of the last token the scanner cannot have read
+// past into the edited text.  Rescanning stops at the first new token
+// behind the edit that covers the same characters as an old token: from
+// there on the old tokens are still right, moved by the change in offset
+// and line, and by the change in column up to the next point where the
+// scanner resets its column counter.
+//
+// Tokens are kept in parallel arrays like in TokenBuffer.  Messages the
+// scanner prints while rescanning are dropped.
+
+class IncrementalLexer {
+	// how far the scanner may read past the end of a token: an identifier
+	// "System" is only known after reading up to the end of System.out.println
+	private static final int LOOKAHEAD = 18;
+
+	private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+	private final StringBuilder text = new StringBuilder();
+	private final Tokens tokens = new Tokens();
+	private int rescanned;
+
+	IncrementalLexer(CharSequence text) {
+		edit(0, 0, text);
+	}
+
+	// the current text of the document
+	CharSequence text() {
+		return text;
+	}
+
+	// number of tokens
+	int size() {
+		return tokens.size;
+	}
+
+	int kind(int i) {
+		return tokens.kinds[i];
+	}
+
+	int line(int i) {
+		return tokens.lines[i];
+	}
+
+	int column(int i) {
+		return tokens.columns[i];
+	}
+
+	// offset of the first character of token i
+	int start(int i) {
+		return tokens.starts[i];
+	}
+
+	// offset of the character after token i
+	int end(int i) {
+		return tokens.ends[i];
+	}
+
+	// value of an INTLITERAL token
+	int intValue(int i) {
+		return tokens.values[i];
+	}
+
+	// text of an ID or STRINGLITERAL token
+	String text(int i) {
+		return tokens.texts[i];
+	}
+
+	// number of tokens the last edit had to scan
+	int rescanned() {
+		return rescanned;
+	}
+
+	// Replaces removed characters at offset by inserted and updates the
+	// tokens.
+	void edit(int offset, int removed, CharSequence inserted) {
+		text.replace(offset, offset + removed, inserted.toString());
+		int delta = inserted.length() - removed;
+		int editEnd = offset + inserted.length();
+
+		int r = lastEndingBefore(offset - LOOKAHEAD);
+		int start = r < 0 ? 0 : tokens.ends[r];
+		Yylex scanner = new Yylex(new TextReader(text, start));
+		scanner.setDiagnostics(new Diagnostics(DISCARD));
+		if (r >= 0)
+			scanner.restartAt(tokens.lines[r] - 1, columnAfter(r));
+
+		Tokens fresh = new Tokens();
+		int old = r + 1;
+		int resets = 0;
+		rescanned = 0;
+		try {
+			for (Symbol t = scanner.next_token(); t.sym != sym.EOF; t = scanner.next_token()) {
+				rescanned++;
+				TokenVal val = (TokenVal) t.value;
+				int s = start + scanner.tokenStart();
+				int e = start + scanner.tokenEnd();
+				boolean reset = scanner.columnResets() != resets;
+				resets = scanner.columnResets();
+
+				if (s >= editEnd) {
+					// the token lies in unchanged text; look for its old copy
+					while (old < tokens.size && tokens.starts[old] < s - delta)
+						old++;
+					if (old < tokens.size && tokens.starts[old] == s - delta
+							&& tokens.ends[old] == e - delta && tokens.kinds[old] == t.sym) {
+						int lineDelta = val.linenum - tokens.lines[old];
+						int columnDelta = val.charnum - tokens.columns[old];
+						fresh.add(t.sym, val, s, e, reset);
+						tokens.replace(r + 1, old + 1, fresh);
+						shift(r + 1 + fresh.size, delta, lineDelta, columnDelta);
+						return;
+					}
+				}
+				fresh.add(t.sym, val, s, e, reset);
+			}
+		} catch (IOException ex) {
+			// TextReader does not throw
+			throw new UncheckedIOException(ex);
+		}
+		tokens.replace(r + 1, tokens.size, fresh);
+	}
+
+	// Index of the last token ending at or before offset, or -1.
+	private int lastEndingBefore(int offset) {
+		int lo = 0;
+		int hi = tokens.size - 1;
+		int found = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (tokens.ends[mid] <= offset) {
+				found = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	// the scanner's column counter after token i
+	private int columnAfter(int i) {
+		if (tokens.kinds[i] == sym.STRINGLITERAL)
+			return tokens.columns[i] + tokens.texts[i].length();
+		return tokens.columns[i] + tokens.ends[i] - tokens.starts[i];
+	}
+
+	// Moves the tokens from index from on.
+	private void shift(int from, int delta, int lineDelta, int columnDelta) {
+		boolean columns = columnDelta != 0;
+		for (int i = from; i < tokens.size; i++) {
+			tokens.starts[i] += delta;
+			tokens.ends[i] += delta;
+			tokens.lines[i] += lineDelta;
+			if (columns) {
+				if (tokens.resets[i])
+					columns = false;
+				else
+					tokens.columns[i] += columnDelta;
+			}
+		}
+	}
+
+	// a list of tokens in parallel arrays
+	private static class Tokens {
+		byte[] kinds = new byte[16];
+		int[] lines = new int[16];
+		int[] columns = new int[16];
+		int[] starts = new int[16];
+		int[] ends = new int[16];
+		int[] values = new int[16];
+		String[] texts = new String[16];
+		// whether the column counter was reset since the previous token
+		boolean[] resets = new boolean[16];
+		int size;
+
+		void add(int kind, TokenVal val, int start, int end, boolean reset) {
+			ensure(size + 1);
+			kinds[size] = (byte) kind;
+			lines[size] = val.linenum;
+			columns[size] = val.charnum;
+			starts[size] = start;
+			ends[size] = end;
+			values[size] = val instanceof IntLitTokenVal ? ((IntLitTokenVal) val).intVal : 0;
+			texts[size] = val instanceof IdTokenVal ? ((IdTokenVal) val).val.toString()
+					: val instanceof StringLitTokenVal ? ((StringLitTokenVal) val).stringVal.toString() : null;
+			resets[size] = reset;
+			size++;
+		}
+
+		// Replaces the tokens from index from up to to (exclusive) by all of
+		// the tokens in t.
+		void replace(int from, int to, Tokens t) {
+			int tail = size - to;
+			int newSize = from + t.size + tail;
+			ensure(newSize);
+			move(to, from + t.size, tail);
+			System.arraycopy(t.kinds, 0, kinds, from, t.size);
+			System.arraycopy(t.lines, 0, lines, from, t.size);
+			System.arraycopy(t.columns, 0, columns, from, t.size);
+			System.arraycopy(t.starts, 0, starts, from, t.size);
+			System.arraycopy(t.ends, 0, ends, from, t.size);
+			System.arraycopy(t.values, 0, values, from, t.size);
+			System.arraycopy(t.texts, 0, texts, from, t.size);
+			System.arraycopy(t.resets, 0, resets, from, t.size);
+			if (newSize < size)
+				Arrays.fill(texts, newSize, size, null);
+			size = newSize;
+		}
+
+		private void move(int from, int to, int n) {
+			System.arraycopy(kinds, from, kinds, to, n);
+			System.arraycopy(lines, from, lines, to, n);
+			System.arraycopy(columns, from, columns, to, n);
+			System.arraycopy(starts, from, starts, to, n);
+			System.arraycopy(ends, from, ends, to, n);
+			System.arraycopy(values, from, values, to, n);
+			System.arraycopy(texts, from, texts, to, n);
+			System.arraycopy(resets, from, resets, to, n);
+		}
+
+		private void ensure(int n) {
+			if (n <= kinds.length)
+				return;
+			int capacity = Math.max(n, kinds.length * 2);
+			kinds = Arrays.copyOf(kinds, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			values = Arrays.copyOf(values, capacity);
+			texts = Arrays.copyOf(texts, capacity);
+			resets = Arrays.copyOf(resets, capacity);
+		}
+	}
+
+	// reads a StringBuilder from a given offset on
+	private static class TextReader extends Reader {
+		private final StringBuilder text;
+		private int pos;
+
+		TextReader(StringBuilder text, int pos) {
+			this.text = text;
+			this.pos = pos;
+		}
+
+		public int read(char[] cbuf, int off, int len) {
+			int n = Math.min(len, text.length() - pos);
+			if (n <= 0)
+				return len == 0 ? 0 : -1;
+			text.getChars(pos, pos + n, cbuf, off);
+			pos += n;
+			return n;
+		}
+
+		public void close() {
+		}
+	}
+}
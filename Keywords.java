@@ -0,0 +1,94 @@
+// Keywords
+//
+// Recognizes the reserved words of Simple with a minimal perfect hash.
+// The scanner matches reserved words with its identifier rule and asks
+// lookup() for the token kind, so the DFA does not need a path per word.
+// System.out.println is not an identifier and keeps its own rule.
+//
+// A word is hashed from its length and its first, second and last
+// characters.  The 17 words map to 17 different slots with the
+// multiplier SEED, which was found by running
+//     java Keywords
+// (run it again after changing WORDS, and copy the new SEED here).
+
+class Keywords {
+	private static final String[] WORDS = {
+		"String", "boolean", "class", "do", "else", "false", "if", "int",
+		"public", "return", "static", "true", "void", "while", "case",
+		"switch", "default"
+	};
+
+	private static final int[] KINDS = {
+		sym.STRING, sym.BOOLEAN, sym.CLASS, sym.DO, sym.ELSE, sym.FALSE,
+		sym.IF, sym.INT, sym.PUBLIC, sym.RETURN, sym.STATIC, sym.TRUE,
+		sym.VOID, sym.WHILE, sym.CASE, sym.SWITCH, sym.DEFAULT
+	};
+
+	private static final int SEED = 0x9704a518;
+
+	private static final int MIN_LENGTH = 2;
+	private static final int MAX_LENGTH = 7;
+
+	// the words and their kinds, by slot; in a class of its own so that
+	// main() still runs when SEED is out of date
+	private static class Slots {
+		static final char[][] WORDS = new char[Keywords.WORDS.length][];
+		static final int[] KINDS = new int[Keywords.WORDS.length];
+
+		static {
+			for (int i = 0; i < Keywords.WORDS.length; i++) {
+				char[] w = Keywords.WORDS[i].toCharArray();
+				int slot = slot(w, 0, w.length, SEED);
+				if (WORDS[slot] != null)
+					throw new Error("Keywords.SEED is out of date; run java Keywords");
+				WORDS[slot] = w;
+				KINDS[slot] = Keywords.KINDS[i];
+			}
+		}
+	}
+
+	// Returns the kind of the reserved word in buf[start .. start+len-1],
+	// or sym.ID if it is not one.
+	static int lookup(char[] buf, int start, int len) {
+		if (len < MIN_LENGTH || len > MAX_LENGTH)
+			return sym.ID;
+		int slot = slot(buf, start, len, SEED);
+		char[] w = Slots.WORDS[slot];
+		if (w.length != len)
+			return sym.ID;
+		for (int i = 0; i < len; i++) {
+			if (w[i] != buf[start + i])
+				return sym.ID;
+		}
+		return Slots.KINDS[slot];
+	}
+
+	private static int slot(char[] buf, int start, int len, int seed) {
+		int h = (len << 24) ^ (buf[start] << 16) ^ (buf[start + 1] << 8)
+				^ buf[start + len - 1];
+		return (int) (((h * seed) & 0xffffffffL) * WORDS.length >>> 32);
+	}
+
+	// Searches for a multiplier that maps every word to its own slot.
+	public static void main(String[] args) {
+		java.util.Random random = new java.util.Random(42);
+		for (long tries = 1; ; tries++) {
+			int seed = random.nextInt();
+			boolean[] used = new boolean[WORDS.length];
+			boolean perfect = true;
+			for (String word : WORDS) {
+				char[] w = word.toCharArray();
+				int slot = slot(w, 0, w.length, seed);
+				if (used[slot]) {
+					perfect = false;
+					break;
+				}
+				used[slot] = true;
+			}
+			if (perfect) {
+				System.out.printf("SEED = 0x%08x (found after %d tries)%n", seed, tries);
+				return;
+			}
+		}
+	}
+}
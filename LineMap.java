@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+// LineMap
+//
+// The offsets at which the lines of a scanner's input start, in a
+// growable array.  The scanner adds the offset after every line
+// terminator it matches, \r\n counting as one, so the line of the
+// token being scanned is just the number of lines so far, and the line
+// of any earlier offset is found by a binary search.  It costs 4 bytes
+// per line of input.
+
+class LineMap {
+	private int[] starts = new int[256];
+	private int size = 1;
+
+	// number of the line that starts at offset 0
+	private final int first;
+
+	// offset after the last \r, to tell \r\n from \n
+	private int crEnd = -1;
+
+	LineMap() {
+		this(1);
+	}
+
+	LineMap(int first) {
+		this.first = first;
+	}
+
+	// Records the line terminator c (\n or \r) ending at offset end.
+	void lineEnd(char c, int end) {
+		if (c == '\n' && end - 1 == crEnd) {
+			// \r\n: the line starts after the \n, not between the two
+			starts[size - 1] = end;
+			return;
+		}
+		if (size == starts.length)
+			starts = Arrays.copyOf(starts, size * 2);
+		starts[size++] = end;
+		if (c == '\r')
+			crEnd = end;
+	}
+
+	// number of the line after the last recorded terminator
+	int last() {
+		return first + size - 1;
+	}
+
+	// Returns the number of the line offset lies on.
+	int line(int offset) {
+		int lo = 0;
+		int hi = size - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (starts[mid] <= offset)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return first + lo;
+	}
+
+	// Returns the offset at which line starts.
+	int start(int line) {
+		return starts[line - first];
+	}
+}
@@ -0,0 +1,184 @@
+import java.io.*;
+
+// LookaheadScanner
+//
+// Gives a parser k tokens of lookahead over a Yylex, and lets it go back
+// to a mark: peek(k) looks at the k-th token ahead without taking it,
+// mark() remembers where the parser is, and reset() goes back there, so
+// that, say, after an ID it can try a declaration and fall back to an
+// expression.  Every token is scanned once, through the scanner's
+// cursor (Yylex.advance), into a fixed-size circular window of
+// primitive tokens; peeking and going back only move in the window and
+// never rescan or reread input.
+//
+// The window holds the tokens from the current token when the mark was
+// set, or the current token if there is no mark, up to the furthest one
+// peeked at.  A peek or an advance that would need more than the window
+// holds throws IllegalStateException; release() drops a mark no longer
+// needed.  Identifiers are kept by id; a string literal's text is copied
+// out of the scanner, as it does not last.  Past the end every token is
+// EOF, and a scanner failure is thrown by the peek or advance that
+// reaches it, with the tokens before it still in the window.
+
+class LookaheadScanner {
+	static final int DEFAULT_CAPACITY = 64;
+
+	private final Yylex scanner;
+	private final int mask;
+	private final int[] kinds;
+	private final int[] lines;
+	private final int[] columns;
+	private final int[] values;
+	private final CharSequence[] texts;
+
+	// token numbers, counted from 0: the next to take, the first not
+	// scanned yet, the mark (-1 if none), and EOF (-1 until scanned)
+	private long next;
+	private long end;
+	private long mark = -1;
+	private long eof = -1;
+
+	LookaheadScanner(Yylex scanner) {
+		this(scanner, DEFAULT_CAPACITY);
+	}
+
+	// The window holds at least capacity tokens (rounded up to a power of
+	// two).
+	LookaheadScanner(Yylex scanner, int capacity) {
+		if (capacity < 2)
+			throw new IllegalArgumentException("capacity " + capacity);
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		this.scanner = scanner;
+		mask = size - 1;
+		kinds = new int[size];
+		lines = new int[size];
+		columns = new int[size];
+		values = new int[size];
+		texts = new CharSequence[size];
+	}
+
+	// Returns the kind of the k-th token ahead (1 is the next one), or
+	// sym.EOF past the end, without taking it.
+	int peek(int k) throws IOException {
+		if (k < 1)
+			throw new IllegalArgumentException("peek(" + k + ")");
+		return kinds[slot(next + k - 1)];
+	}
+
+	// Takes the next token and returns its kind; line() and the rest then
+	// describe it.
+	int advance() throws IOException {
+		int kind = kinds[slot(next)];
+		next++;
+		return kind;
+	}
+
+	// the token advance() returned last
+	int kind() {
+		return kinds[current()];
+	}
+
+	int line() {
+		return lines[current()];
+	}
+
+	int column() {
+		return columns[current()];
+	}
+
+	// value of an INTLITERAL token
+	int intValue() {
+		return values[current()];
+	}
+
+	// id of an ID token in the scanner's ids()
+	int id() {
+		return values[current()];
+	}
+
+	// text of an ID or STRINGLITERAL token
+	CharSequence text() {
+		return textAt(current());
+	}
+
+	// the k-th token ahead, as for peek(k)
+	int line(int k) throws IOException {
+		peek(k);
+		return lines[slot(next + k - 1)];
+	}
+
+	int column(int k) throws IOException {
+		peek(k);
+		return columns[slot(next + k - 1)];
+	}
+
+	int intValue(int k) throws IOException {
+		peek(k);
+		return values[slot(next + k - 1)];
+	}
+
+	CharSequence text(int k) throws IOException {
+		peek(k);
+		return textAt(slot(next + k - 1));
+	}
+
+	// Marks the current position; reset() comes back to it.  Replaces
+	// the mark before.
+	void mark() {
+		mark = next;
+	}
+
+	// Goes back to the mark, so that advance() takes the tokens after it
+	// again.  The mark stays.
+	void reset() {
+		if (mark < 0)
+			throw new IllegalStateException("no mark");
+		next = mark;
+	}
+
+	// Drops the mark, freeing the window up to the current token.
+	void release() {
+		mark = -1;
+	}
+
+	private CharSequence textAt(int s) {
+		if (kinds[s] == sym.ID)
+			return scanner.ids().name(values[s]);
+		return texts[s];
+	}
+
+	private int current() {
+		if (next == 0)
+			throw new IllegalStateException("no token taken yet");
+		long n = eof >= 0 && next - 1 > eof ? eof : next - 1;
+		return (int) (n & mask);
+	}
+
+	// Returns the window slot of token n, scanning up to it if need be.
+	private int slot(long n) throws IOException {
+		if (eof >= 0 && n > eof)
+			n = eof;
+		while (n >= end)
+			fill();
+		return (int) (n & mask);
+	}
+
+	// Scans the next token into the window.
+	private void fill() throws IOException {
+		// the window must keep the token before the mark, or else the
+		// current token, and all after it
+		long first = Math.max((mark >= 0 ? mark : next) - 1, 0);
+		if (end - first > mask)
+			throw new IllegalStateException("lookahead beyond " + (mask + 1) + " tokens");
+		int s = (int) (end & mask);
+		int kind = scanner.advance();
+		kinds[s] = kind;
+		lines[s] = scanner.line();
+		columns[s] = scanner.column();
+		values[s] = scanner.intValue();
+		texts[s] = kind == sym.STRINGLITERAL ? scanner.text().toString() : null;
+		if (kind == sym.EOF)
+			eof = end;
+		end++;
+	}
+}
@@ -0,0 +1,150 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// MappedReader
+//
+// A Reader over a memory-mapped source file.  ASCII bytes are copied
+// straight from the mapping into the caller's char array; only when a
+// non-ASCII byte shows up is the input handed to a decoder for the
+// reader's charset (the default charset unless one is given), so the
+// characters delivered are exactly the ones a FileReader would deliver.
+//
+// Files larger than one mapping window are mapped window by window.  A
+// reader can also be given just a range of the file's bytes, which had
+// better start and end between characters (ChunkedScanner splits after
+// a \n).  A character outside the BMP that comes when the caller has
+// room for one more char only is returned half now, half on the next
+// read.
+
+class MappedReader extends Reader {
+	// largest region mapped at once (FileChannel.map is limited to 2 GB)
+	private static final long WINDOW = 1L << 30;
+
+	private final FileChannel channel;
+	private final long start;
+	private final long end;
+	private long windowStart;
+	private MappedByteBuffer window;
+	private final Charset charset;
+	private CharsetDecoder decoder;
+
+	// a surrogate pair decoded when only one char fitted, and whether its
+	// low surrogate is still to be returned
+	private final char[] pair = new char[2];
+	private boolean pendingLow;
+
+	MappedReader(String fileName) throws IOException {
+		this(fileName, Charset.defaultCharset());
+	}
+
+	MappedReader(String fileName, Charset charset) throws IOException {
+		this(fileName, 0, -1, charset);
+	}
+
+	// Reads the bytes of fileName from start up to end, or up to the end
+	// of the file if end is -1.
+	MappedReader(String fileName, long start, long end, Charset charset) throws IOException {
+		channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		this.start = start;
+		this.end = end < 0 ? channel.size() : end;
+		this.charset = charset;
+		map(start);
+	}
+
+	// length of the mapped bytes
+	long length() {
+		return end - start;
+	}
+
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+
+		int n = 0;
+		if (pendingLow) {
+			cbuf[off + n++] = pair[1];
+			pendingLow = false;
+		}
+		while (n < len) {
+			ByteBuffer in = window;
+			int p = in.position();
+			int lim = in.limit();
+
+			// fast path: plain ASCII
+			while (n < len && p < lim) {
+				byte b = in.get(p);
+				if (b < 0)
+					break;
+				cbuf[off + n++] = (char) b;
+				p++;
+			}
+			in.position(p);
+
+			if (n < len && p < lim) {
+				// non-ASCII input: let the decoder take over for this call
+				CharBuffer out = CharBuffer.wrap(cbuf, off + n, len - n);
+				CoderResult result = decoder().decode(in, out, isLastWindow());
+				int decoded = out.position() - off - n;
+				n += decoded;
+				if (result.isOverflow() && decoded == 0) {
+					// the next character is a surrogate pair and there is
+					// room for one char only
+					if (n > 0)
+						return n;
+					return readPair(cbuf, off);
+				}
+				if (n < len && result.isUnderflow() && !isLastWindow()) {
+					// carries an incomplete sequence over into the next window
+					map(windowStart + in.position());
+				}
+				continue;
+			}
+			if (p == lim) {
+				if (isLastWindow())
+					break;
+				map(windowStart + lim);
+			}
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	// Decodes the surrogate pair next in the window into pair and returns
+	// its high surrogate in cbuf[off]; the next read starts with the low
+	// one.
+	private int readPair(char[] cbuf, int off) {
+		CharBuffer out = CharBuffer.wrap(pair);
+		decoder().decode(window, out, isLastWindow());
+		cbuf[off] = pair[0];
+		pendingLow = out.position() == 2;
+		return 1;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private boolean isLastWindow() {
+		return windowStart + window.limit() == end;
+	}
+
+	private void map(long at) throws IOException {
+		windowStart = at;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, at,
+				Math.min(WINDOW, end - at));
+	}
+
+	private CharsetDecoder decoder() {
+		if (decoder == null) {
+			decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		return decoder;
+	}
+}
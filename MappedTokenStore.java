@@ -0,0 +1,294 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+// MappedTokenStore
+//
+// A token stream kept outside the Java heap, in memory-mapped temporary
+// files, so the tokens of many large files can be held at once without
+// the garbage collector having to look at them (P2 -offheap).  Like
+// TokenBuffer, token i has a kind, a line, a column and a value; here
+// they are a fixed-width record of four ints at i * 16 in one file.  The
+// value of an ID or STRINGLITERAL is the index of its text.  The texts
+// are kept in a second file as UTF-16 chars, one after the other, and a
+// third file holds where each text ends.  An identifier's name is stored
+// once, however often it occurs.
+//
+// The files grow a segment of 64 MB at a time.  A store is filled by one
+// thread; once filled, it may be read by any number of threads.
+//
+// close() deletes the files, but the release of their mappings is left
+// to the garbage collector: it unmaps a segment when it collects its
+// MappedByteBuffer, and until then the segment's address space stays
+// reserved.  Java 17 has no supported way to unmap on request.  The
+// foreign memory API, whose MemorySegments an Arena frees on close,
+// incubates in 17; using it takes --add-modules on every javac and java
+// run and prints a warning on every start of P2.  Unmapping through the
+// JDK's internal cleaner would crash the JVM if a reader still touched
+// the segment, where a store used after close() throws
+// IllegalStateException now.  The pages of a released store are file
+// pages the system can reclaim under pressure, so they take address
+// space rather than memory.
+
+class MappedTokenStore implements Closeable {
+	private static final int RECORD = 16;
+
+	// tokens scanned at a time by scan()
+	private static final int BATCH = 4096;
+
+	private Region records;
+	private Region textEnds;   // a long per text: the offset after it
+	private Region chars;
+
+	private long size;
+	private long textCount;
+	private long charBytes;
+
+	// text index + 1 of each id of idTable, 0 if not stored yet
+	private IdTable idTable;
+	private int[] idTexts = new int[0];
+
+	// Creates an empty store with its files in dir (java.io.tmpdir if
+	// null).
+	MappedTokenStore(Path dir) throws IOException {
+		if (dir == null)
+			dir = Paths.get(System.getProperty("java.io.tmpdir"));
+		try {
+			records = new Region(dir);
+			textEnds = new Region(dir);
+			chars = new Region(dir);
+		} catch (IOException ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	// Scans the rest of scanner's input into the store, a batch of
+	// tokens at a time.  If the scanner fails, the tokens before are
+	// stored.
+	void scan(Yylex scanner) throws IOException {
+		TokenBuffer batch = new TokenBuffer();
+		boolean more = true;
+		while (more) {
+			batch.clear();
+			try {
+				more = scanner.scanSome(batch, BATCH);
+			} finally {
+				add(batch);
+			}
+		}
+	}
+
+	// Adds the tokens in tokens.
+	void add(TokenBuffer tokens) throws IOException {
+		if (tokens.ids() != idTable) {
+			idTable = tokens.ids();
+			idTexts = new int[0];
+		}
+		for (int i = 0; i < tokens.size(); i++) {
+			int kind = tokens.kind(i);
+			int value = tokens.intValue(i);
+			if (kind == sym.ID) {
+				int id = tokens.id(i);
+				if (id >= idTexts.length)
+					idTexts = Arrays.copyOf(idTexts, Math.max(id + 1, 2 * idTexts.length));
+				if (idTexts[id] == 0)
+					idTexts[id] = addText(tokens.text(i)) + 1;
+				value = idTexts[id] - 1;
+			} else if (kind == sym.STRINGLITERAL) {
+				value = addText(tokens.text(i));
+			}
+			add(kind, tokens.line(i), tokens.column(i), value);
+		}
+	}
+
+	// Adds a token; value is the literal of an INTLITERAL and the index
+	// of the text of an ID or STRINGLITERAL (see addText).
+	void add(int kind, int line, int column, int value) throws IOException {
+		long at = size * RECORD;
+		MappedByteBuffer seg = records.segment(at);
+		int p = Region.offset(at);
+		seg.putInt(p, kind);
+		seg.putInt(p + 4, line);
+		seg.putInt(p + 8, column);
+		seg.putInt(p + 12, value);
+		size++;
+	}
+
+	// Stores a text and returns its index.
+	int addText(CharSequence text) throws IOException {
+		if (textCount == Integer.MAX_VALUE)
+			throw new IOException("too many texts in token store");
+		int len = text.length();
+		for (int i = 0; i < len; ) {
+			MappedByteBuffer seg = chars.segment(charBytes);
+			int p = Region.offset(charBytes);
+			int n = Math.min(len - i, (Region.SEGMENT - p) / 2);
+			for (int j = 0; j < n; j++)
+				seg.putChar(p + 2 * j, text.charAt(i + j));
+			i += n;
+			charBytes += 2L * n;
+		}
+		long at = textCount * 8;
+		textEnds.segment(at).putLong(Region.offset(at), charBytes);
+		return (int) textCount++;
+	}
+
+	// number of tokens
+	long size() {
+		return size;
+	}
+
+	int kind(long i) {
+		return field(i, 0);
+	}
+
+	int line(long i) {
+		return field(i, 4);
+	}
+
+	int column(long i) {
+		return field(i, 8);
+	}
+
+	// value of an INTLITERAL token
+	int intValue(long i) {
+		return field(i, 12);
+	}
+
+	// Returns the text of ID or STRINGLITERAL token i, as a view of the
+	// store that is valid until it is closed.
+	CharSequence text(long i) {
+		return text(field(i, 12));
+	}
+
+	// Returns text number t.
+	CharSequence text(int t) {
+		long start = t == 0 ? 0 : textEnd(t - 1);
+		return new Text(start, (int) ((textEnd(t) - start) / 2));
+	}
+
+	private long textEnd(int t) {
+		if (t < 0 || t >= textCount)
+			throw new IndexOutOfBoundsException("text " + t);
+		long at = (long) t * 8;
+		return textEnds.segment(at).getLong(Region.offset(at));
+	}
+
+	private int field(long i, int offset) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("token " + i);
+		long at = i * RECORD;
+		return records.segment(at).getInt(Region.offset(at) + offset);
+	}
+
+	// Deletes the files and drops the mappings; the store cannot be used
+	// afterwards.
+	public void close() throws IOException {
+		IOException failure = null;
+		for (Region r : new Region[] { records, textEnds, chars }) {
+			try {
+				if (r != null)
+					r.close();
+			} catch (IOException ex) {
+				failure = ex;
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	// a text as a view of the chars file
+	private class Text implements CharSequence {
+		private final long start;
+		private final int length;
+
+		Text(long start, int length) {
+			this.start = start;
+			this.length = length;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public char charAt(int index) {
+			if (index < 0 || index >= length)
+				throw new IndexOutOfBoundsException(index);
+			long at = start + 2L * index;
+			return chars.segment(at).getChar(Region.offset(at));
+		}
+
+		public CharSequence subSequence(int from, int to) {
+			if (from < 0 || to > length || from > to)
+				throw new IndexOutOfBoundsException();
+			return new Text(start + 2L * from, to - from);
+		}
+
+		public String toString() {
+			char[] c = new char[length];
+			for (int i = 0; i < length; i++)
+				c[i] = charAt(i);
+			return new String(c);
+		}
+	}
+
+	// A temporary file mapped a segment at a time, as it grows.  A record,
+	// a char or a long never straddles two segments.  Readers take
+	// segments without a lock, so the array of segments is never changed
+	// once published: map() publishes a new one.
+	private static class Region {
+		static final int SHIFT = 26;
+		static final int SEGMENT = 1 << SHIFT;
+
+		private final FileChannel channel;
+		private volatile MappedByteBuffer[] segments = new MappedByteBuffer[4];
+
+		Region(Path dir) throws IOException {
+			Path file = Files.createTempFile(dir, "tokens", ".tmp");
+			channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+		}
+
+		static int offset(long at) {
+			return (int) (at & (SEGMENT - 1));
+		}
+
+		// Returns the segment holding offset at, mapping it if need be.
+		MappedByteBuffer segment(long at) {
+			MappedByteBuffer[] segs = segments;
+			if (segs == null)
+				throw new IllegalStateException("token store is closed");
+			int s = (int) (at >>> SHIFT);
+			if (s < segs.length && segs[s] != null)
+				return segs[s];
+			return map(s);
+		}
+
+		private synchronized MappedByteBuffer map(int s) {
+			MappedByteBuffer[] segs = segments;
+			if (segs == null)
+				throw new IllegalStateException("token store is closed");
+			if (s < segs.length && segs[s] != null)
+				return segs[s];
+			segs = Arrays.copyOf(segs, Math.max(s + 1, segs.length));
+			try {
+				// mapping past the end of the file makes it longer
+				segs[s] = channel.map(FileChannel.MapMode.READ_WRITE, (long) s << SHIFT, SEGMENT);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			segments = segs;
+			return segs[s];
+		}
+
+		// Drops the segments, which the collector then unmaps (see the
+		// class comment), and deletes the file.
+		synchronized void close() throws IOException {
+			segments = null;
+			channel.close();
+		}
+	}
+}
@@ -1,180 +1,356 @@
 import java.io.*;
-import java_cup.runtime.*; // defines Symbol
+import java.nio.file.*;
 
 // **********************************************************************
 // Main program to test the simple scanner.
 //
 // The file to be scanned should be given as a command-line argument.
-// The program opens the file and calls the scanner until the EOF token
-// is returned.  For each token, the line and character numbers are printed
-// (to System.out), followed by the token name.  If the token has a value
-// (is a literal or an identifier), the value is printed, too.
+// With -mmap the file is memory-mapped instead of read through a
+// FileReader; with -slices it is read whole before scanning.  The
+// program opens the file and calls the scanner until the EOF token is
+// returned.  For each token, the line and character numbers are printed
+// (to System.out, buffered by a TokenWriter), followed by the token
+// name.  If the token has a value (is a literal or an identifier), the
+// value is printed, too.
+//
+// Given several files or a directory, P2 scans all of them (see
+// BatchScanner).  With -cache, files scanned before are replayed from a
+// TokenCache.  With -binary the tokens are written in the binary format
+// of BinaryTokenWriter, which -decode prints as text again.  With -split
+// one large file is scanned in chunks on several threads (see
+// ChunkedScanner).  With -offheap the tokens are kept in a
+// MappedTokenStore, outside the heap, until they are printed.  With
+// -readahead the file is read on a second thread while the scanner
+// works (see ReadAheadReader); with -pipeline the scanner itself runs
+// on a thread of its own (see PipelinedScanner).  The options are
+// described in ScanOptions.
+// ScanDaemon runs P2 for ScanClient through run().
 // **********************************************************************
 
 public class P2 {
 	public static void main(String[] args) {
-		// check for command-line arg
-		if (args.length != 1) {
-			System.err.println("please supply name of file to be scanned.");
-			System.exit(-1);
+		int status = run(ScanOptions.parse(args), new FileOutputStream(FileDescriptor.out), System.err);
+		if (status != 0)
+			System.exit(status);
+	}
+
+	// Does the work of main, writing to stdout and err instead of
+	// System.out and System.err.  Returns the exit status.
+	static int run(ScanOptions opts, OutputStream stdout, PrintStream err) {
+		// check for command-line args
+		if (opts.error != null) {
+			err.println(opts.error);
+			return -1;
+		}
+		if (opts.files.isEmpty()) {
+			err.println("please supply name of file to be scanned.");
+			return -1;
+		}
+		if (opts.files.size() > 1 || Files.isDirectory(opts.resolve(Paths.get(opts.files.get(0))))) {
+			return BatchScanner.run(opts, stdout, err);
+		}
+		String fileName = opts.files.get(0);
+
+		// all standard output, including prints from the scanner actions,
+		// goes through one TokenWriter buffer
+		TokenWriter out = new TokenWriter(stdout, opts.output);
+
+		if (opts.decode) {
+			try {
+				decode(fileName, opts, out, err);
+			} catch (FileNotFoundException | NoSuchFileException ex) {
+				out.flush();
+				err.println("File " + fileName + " not found.");
+				return -1;
+			} catch (IOException ex) {
+				out.flush();
+				err.println(fileName + ": " + ex.getMessage());
+				return -1;
+			} finally {
+				out.flush();
+			}
+			return 0;
 		}
 
-		// open input file
-		FileReader inFile = null;
+		if (opts.cache != null) {
+			try {
+				scanCached(fileName, opts, out, err);
+			} catch (FileNotFoundException | NoSuchFileException ex) {
+				out.flush();
+				err.println("File " + fileName + " not found.");
+				return -1;
+			} catch (IOException ex) {
+				out.flush();
+				err.println("File " + fileName + " could not be opened.");
+				return -1;
+			} finally {
+				out.flush();
+			}
+			return 0;
+		}
+
+		if (opts.split > 0) {
+			try {
+				scanSplit(fileName, opts, out, err);
+			} catch (FileNotFoundException | NoSuchFileException ex) {
+				out.flush();
+				err.println("File " + fileName + " not found.");
+				return -1;
+			} catch (IOException ex) {
+				out.flush();
+				err.println("File " + fileName + " could not be opened.");
+				return -1;
+			} finally {
+				out.flush();
+			}
+			return 0;
+		}
+
+		// open input file and create the scanner
+		Yylex scanner = null;
 		try {
-			inFile = new FileReader(args[0]);
-		} catch (FileNotFoundException ex) {
-			System.err.println("File " + args[0] + " not found.");
-			System.exit(-1);
+			scanner = open(fileName, opts);
+		} catch (FileNotFoundException | NoSuchFileException ex) {
+			err.println("File " + fileName + " not found.");
+			return -1;
+		} catch (IOException ex) {
+			err.println("File " + fileName + " could not be opened.");
+			return -1;
 		}
+		setUp(scanner, opts, fileName, err);
 
-		// create and call the scanner
-		Yylex scanner = new Yylex(inFile);
+		// call the scanner
 		try {
-			Symbol token = scanner.next_token();
-			while (token.sym != sym.EOF) {
-				System.out.print(((TokenVal) token.value).linenum + ":" +
-						((TokenVal) token.value).charnum + " ");
-				switch (token.sym) {
-					case sym.AND:
-						System.out.println("AND");
-						break;
-					case sym.ASSIGN:
-						System.out.println("ASSIGN");
-						break;
-					case sym.BOOLEAN:
-						System.out.println("BOOL");
-						break;
-					case sym.CASE:
-						System.out.println("CASE");
-						break;
-					case sym.CLASS:
-						System.out.println("CLASS");
-						break;
-					case sym.COMMA:
-						System.out.println("COMMA");
-						break;
-					case sym.DEFAULT:
-						System.out.println("DEFAULT");
-						break;
-					case sym.DIVIDE:
-						System.out.println("DIVIDE");
-						break;
-					case sym.DO:
-						System.out.println("DO");
-						break;
-					case sym.ELSE:
-						System.out.println("ELSE");
-						break;
-					case sym.EOF:
-						System.out.println("EOF");
-						break;
-					case sym.EQUALS:
-						System.out.println("EQ");
-						break;
-					case sym.FALSE:
-						System.out.println("FALSE");
-						break;
-					case sym.GREATER:
-						System.out.println("GREATER");
-						break;
-					case sym.GREATEREQ:
-						System.out.println("GREATEREQ");
-						break;
-					case sym.ID:
-						System.out.println("IDENTIFIER: " + ((IdTokenVal) token.value).val);
-						break;
-					case sym.IF:
-						System.out.println("IF");
-						break;
-					case sym.INT:
-						System.out.println("INT");
-						break;
-					case sym.INTLITERAL:
-						System.out.println("INTLITERAL: " + ((IntLitTokenVal) token.value).intVal);
-						break;
-					case sym.LCURLY:
-						System.out.println("LCURLY");
-						break;
-					case sym.LESS:
-						System.out.println("LESS");
-						break;
-					case sym.LESSEQ:
-						System.out.println("LESSEQ");
-						break;
-					case sym.LPAREN:
-						System.out.println("LPAREN");
-						break;
-					case sym.MINUS:
-						System.out.println("MINUS");
-						break;
-					case sym.NOT:
-						System.out.println("NOT");
-						break;
-					case sym.NOTEQUALS:
-						System.out.println("NOTEQ");
-						break;
-					case sym.OR:
-						System.out.println("OR");
-						break;
-					case sym.PLUS:
-						System.out.println("PLUS");
-						break;
-					case sym.PRINT:
-						System.out.println("PRINT");
-						break;
-					case sym.PUBLIC:
-						System.out.println("PUBLIC");
-						break;
-					case sym.RCURLY:
-						System.out.println("RCURLY");
-						break;
-					case sym.RETURN:
-						System.out.println("RETURN");
-						break;
-					case sym.RPAREN:
-						System.out.println("RPAREN");
-						break;
-					case sym.SEMICOLON:
-						System.out.println("SEMIC");
-						break;
-					case sym.STATIC:
-						System.out.println("STATIC");
-						break;
-					case sym.STRING:
-						System.out.println("STRING");
-						break;
-					case sym.STRINGLITERAL:
-						System.out.println("STRINGLITERAL: " + ((StringLitTokenVal) token.value).stringVal);
-						break;
-					case sym.SWITCH:
-						System.out.println("SWITCH");
-						break;
-					case sym.TIMES:
-						System.out.println("TIMES");
-						break;
-					case sym.TRUE:
-						System.out.println("TRUE");
-						break;
-					case sym.VOID:
-						System.out.println("VOID");
-						break;
-					case sym.WHILE:
-						System.out.println("WHILE");
-						break;
-					case sym.error:
-						System.err.println("err");
-						break;
-					default:
-						System.err.println("P2 switch case default hit!");
+			scan(scanner, opts, out, err);
+		} catch (IOException ex) {
+			out.flush();
+			err.println("unexpected IOException thrown by the scanner");
+			return -1;
+		} finally {
+			out.flush();
+			try {
+				scanner.yyclose();
+			} catch (IOException ex) {
+				// nothing left to read
+			}
+		}
+		return 0;
+	}
+
+	static Yylex open(String fileName, ScanOptions opts) throws IOException {
+		Path path = opts.resolve(Paths.get(fileName));
+		if (opts.slices && opts.mapped) {
+			MappedReader in = new MappedReader(path.toString(), opts.charset);
+			return Yylex.retained(in, in.length());
+		}
+		if (opts.slices)
+			return Yylex.retained(reader(path, opts), Files.size(path));
+		if (opts.mapped)
+			return Yylex.mapped(path.toString(), opts.charset);
+		return new Yylex(reader(path, opts));
+	}
+
+	// a FileReader for path, read ahead on a thread of its own if opts
+	// say so
+	private static Reader reader(Path path, ScanOptions opts) throws IOException {
+		Reader in = new FileReader(path.toFile(), opts.charset);
+		return opts.readAhead ? new ReadAheadReader(in) : in;
+	}
+
+	// Sends the diagnostics of scanner, which scans fileName, to err as
+	// opts say, and enables its metrics if they are printed or recorded.
+	static void setUp(Yylex scanner, ScanOptions opts, String fileName, PrintStream err) {
+		scanner.setDiagnostics(Diagnostics.of(opts, err, fileName));
+		if (opts.metrics || ScanMetrics.recording())
+			scanner.enableMetrics(fileName).setCharset(opts.charset);
+	}
+
+	// Scans all tokens and writes them to out.  The scanner's diagnostics
+	// are written at the end, or when it fails, followed by its metrics.
+	static void scan(Yylex scanner, ScanOptions opts, TokenWriter out, PrintStream err) throws IOException {
+		try {
+			if (opts.bulk) {
+				TokenBuffer tokens = new TokenBuffer();
+				try {
+					scanner.scanAll(tokens);
+				} finally {
+					// the tokens before a failure, as when scanning one by one
+					write(tokens, opts, out, err);
 				}
+			} else if (opts.pipeline) {
+				try (PipelinedScanner tokens = new PipelinedScanner(scanner)) {
+					dump(tokens, out, err);
+				}
+			} else if (opts.offheap) {
+				try (MappedTokenStore tokens = new MappedTokenStore(null)) {
+					try {
+						tokens.scan(scanner);
+					} finally {
+						dump(tokens, out, err);
+					}
+				}
+			} else if (opts.binary) {
+				new BinaryTokenWriter(out).write(scanner);
+			} else {
+				dump(scanner, out, err);
+			}
+		} finally {
+			finish(scanner, opts, err);
+		}
+	}
 
-				token = scanner.next_token();
+	// Scans fileName like open, setUp and scan together, but through the
+	// token cache named in opts (see TokenCache): if a file with the same
+	// contents was scanned before, its tokens and diagnostics are replayed
+	// from the cache; otherwise the file is scanned and stored in it.  The
+	// tokens are written as in bulk mode, and metrics are only given for
+	// files that are scanned.
+	static void scanCached(String fileName, ScanOptions opts, TokenWriter out, PrintStream err) throws IOException {
+		byte[] content = Files.readAllBytes(opts.resolve(Paths.get(fileName)));
+		TokenCache cache = TokenCache.get(opts.resolve(Paths.get(opts.cache)), opts.cacheSize);
+		String key = cache.key(content, opts.charset);
+		TokenCache.Entry entry = cache.load(key);
+		if (entry != null) {
+			write(entry.tokens, opts, out, err);
+			Diagnostics diagnostics = Diagnostics.of(opts, err, fileName);
+			entry.replay(diagnostics);
+			diagnostics.flush();
+			return;
+		}
 
+		// the bytes hashed are the bytes scanned, even if the file changes
+		Yylex scanner = new Yylex(new InputStreamReader(new ByteArrayInputStream(content), opts.charset));
+		setUp(scanner, opts, fileName, err);
+		entry = new TokenCache.Entry();
+		scanner.diagnostics().listener = entry;
+		try {
+			scanner.scanAll(entry.tokens);
+		} finally {
+			// as when scanning token by token, a failed scan still writes
+			// the tokens before the failure; it is not stored
+			write(entry.tokens, opts, out, err);
+			finish(scanner, opts, err);
+		}
+		cache.store(key, entry, err);
+	}
+
+	// Scans fileName with a ChunkedScanner, in chunks of opts.split KB,
+	// and writes the tokens to out as scan would.
+	static void scanSplit(String fileName, ScanOptions opts, TokenWriter out, PrintStream err) throws IOException {
+		ChunkedScanner scanner = new ChunkedScanner(opts.resolve(Paths.get(fileName)).toString(), opts.charset,
+				opts.threads, (long) opts.split << 10);
+		Diagnostics diagnostics = Diagnostics.of(opts, err, fileName);
+		BinaryTokenWriter binary = opts.binary ? new BinaryTokenWriter(out) : null;
+		try {
+			scanner.scan(diagnostics, tokens -> {
+				if (binary != null)
+					binary.add(tokens);
+				else
+					dump(tokens, out, err);
+			});
+			if (binary != null)
+				binary.finish();
+		} finally {
+			// after a failure, the tokens before it, but no end
+			if (binary != null)
+				binary.flush();
+			diagnostics.flush();
+		}
+	}
+
+	// Writes the scanner's diagnostics and metrics after a scan.
+	private static void finish(Yylex scanner, ScanOptions opts, PrintStream err) {
+		scanner.diagnostics().flush();
+		ScanMetrics metrics = scanner.metrics();
+		if (metrics != null) {
+			metrics.diagnostics = scanner.diagnostics().count();
+			metrics.commit();
+			if (opts.metrics)
+				metrics.print(err);
+		}
+	}
+
+	// Moves the scanner's cursor over every token up to EOF and writes
+	// each to out.  No Symbol is made, so the loop allocates nothing.
+	static void dump(Yylex scanner, TokenWriter out, PrintStream err) throws IOException {
+		for (int kind = scanner.advance(); kind != sym.EOF; kind = scanner.advance()) {
+			dumpToken(kind, scanner.line(), scanner.column(), scanner.intValue(),
+					hasText(kind) ? scanner.text() : null, out, err);
+		}
+	}
+
+	// Writes every token in tokens to out, as text or in binary as opts
+	// say.
+	static void write(TokenBuffer tokens, ScanOptions opts, TokenWriter out, PrintStream err) throws IOException {
+		if (opts.binary)
+			new BinaryTokenWriter(out).write(tokens);
+		else
+			dump(tokens, out, err);
+	}
+
+	// Reads the binary token stream in fileName and writes its tokens to
+	// out, as dump would have written them when they were scanned.
+	static void decode(String fileName, ScanOptions opts, TokenWriter out, PrintStream err) throws IOException {
+		try (InputStream in = Files.newInputStream(opts.resolve(Paths.get(fileName)))) {
+			BinaryTokenReader tokens = new BinaryTokenReader(in);
+			while (tokens.next()) {
+				int kind = tokens.kind();
+				dumpToken(kind, tokens.line(), tokens.column(), tokens.intValue(),
+						hasText(kind) ? tokens.text() : null, out, err);
 			}
-		} catch (IOException ex) {
-			System.err.println("unexpected IOException thrown by the scanner");
-			System.exit(-1);
 		}
 	}
+
+	// Takes every token from tokens and writes it to out.
+	static void dump(PipelinedScanner tokens, TokenWriter out, PrintStream err) throws IOException {
+		for (int kind = tokens.advance(); kind != sym.EOF; kind = tokens.advance()) {
+			dumpToken(kind, tokens.line(), tokens.column(), tokens.intValue(),
+					hasText(kind) ? tokens.text() : null, out, err);
+		}
+	}
+
+	// Writes every token in tokens to out.
+	static void dump(MappedTokenStore tokens, TokenWriter out, PrintStream err) {
+		for (long i = 0; i < tokens.size(); i++) {
+			int kind = tokens.kind(i);
+			dumpToken(kind, tokens.line(i), tokens.column(i), tokens.intValue(i),
+					hasText(kind) ? tokens.text(i) : null, out, err);
+		}
+	}
+
+	// Writes every token in tokens to out.
+	static void dump(TokenBuffer tokens, TokenWriter out, PrintStream err) {
+		for (int i = 0; i < tokens.size(); i++) {
+			int kind = tokens.kind(i);
+			dumpToken(kind, tokens.line(i), tokens.column(i), tokens.intValue(i),
+					hasText(kind) ? tokens.text(i) : null, out, err);
+		}
+	}
+
+	// Writes one token to out, as every dump above does.  value is the
+	// value of an INTLITERAL, and text the text of an ID or STRINGLITERAL.
+	static void dumpToken(int kind, int line, int column, int value, CharSequence text,
+			TokenWriter out, PrintStream err) {
+		switch (kind) {
+			case sym.ID:
+			case sym.STRINGLITERAL:
+				out.token(line, column, kind, text);
+				break;
+			case sym.INTLITERAL:
+				out.token(line, column, kind, value);
+				break;
+			case sym.error:
+				out.token(line, column, kind);
+				err.println("err");
+				break;
+			default:
+				if (!out.token(line, column, kind))
+					err.println("P2 switch case default hit!");
+		}
+	}
+
+	// whether a token of this kind has a text
+	private static boolean hasText(int kind) {
+		return kind == sym.ID || kind == sym.STRINGLITERAL;
+	}
 }
@@ -0,0 +1,249 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java_cup.runtime.Symbol;
+
+// PipelinedScanner
+//
+// Runs a Yylex on a thread of its own and hands its tokens to the
+// calling thread (P2 -pipeline), so that scanning and whatever consumes
+// the tokens (a CUP parser, say) overlap instead of taking turns.  The
+// scanner thread scans a batch of tokens at a time into one of the
+// TokenBuffers of a ring and publishes it; the consumer takes the
+// batches in order and hands the buffers back.  There is one producer
+// and one consumer, so the ring needs no lock: each side owns one
+// counter, and a thread waits (spinning briefly, then parked) only when
+// the ring is full or empty, until the other side unparks it.  A full
+// ring stops the scanner until the consumer catches up.
+//
+// The ring's buffers are reused, identifiers are passed by id and string
+// literals are copied into the characters of their batch's buffer, so
+// no token allocates anything once the buffers have grown.  The names
+// of new identifiers come with the batch they first occur in, as the
+// scanner's IdTable must not be read while it grows.  next_token() makes
+// a Symbol per token, as a CUP parser keeps them; advance() and the
+// accessors after it do not, and the text of a string literal they give
+// is overwritten once its batch is handed back.
+//
+// When the scanner fails, the tokens before the failure are delivered
+// first, and then its IOException or Error is thrown to the consumer.
+// The scanner's diagnostics may be flushed once the consumer has seen
+// the end.
+
+class PipelinedScanner implements java_cup.runtime.Scanner, Closeable {
+	static final int SLOTS = 4;
+	static final int BATCH = 1024;
+
+	// spins before a waiting thread parks
+	private static final int SPINS = 64;
+
+	// one batch of the ring
+	private static class Slot {
+		final TokenBuffer tokens = new TokenBuffer();
+		CharSequence[] names = new CharSequence[16];   // of the new ids
+		int firstId;
+		int nameCount;
+		boolean end;
+	}
+
+	private final Yylex scanner;
+	private final Slot[] slots = new Slot[SLOTS];
+	private final Thread producer;
+
+	// batches published by the producer and released by the consumer;
+	// each is written by one side only
+	private volatile long published;
+	private volatile long released;
+	private volatile boolean producerWaiting;
+	private volatile boolean consumerWaiting;
+	private volatile boolean closed;
+	private Thread consumer;
+	private Throwable failure;   // published with the last batch
+
+	// the consumer's batch and position in it, and its copy of the names
+	private Slot slot;
+	private int pos = -1;
+	private CharSequence[] names = new CharSequence[256];
+	private boolean done;
+
+	// Starts scanning the rest of scanner's input on a new thread.
+	PipelinedScanner(Yylex scanner) {
+		this.scanner = scanner;
+		for (int i = 0; i < SLOTS; i++)
+			slots[i] = new Slot();
+		producer = new Thread(this::produce, "scanner");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	// the scanner thread
+	private void produce() {
+		long n = 0;
+		int ids = 0;
+		boolean more = true;
+		while (more) {
+			while (n - released == SLOTS) {
+				if (closed)
+					return;
+				producerWaiting = true;
+				if (n - released == SLOTS && !closed)
+					pause();
+				producerWaiting = false;
+			}
+			Slot s = slots[(int) (n % SLOTS)];
+			s.tokens.clear();
+			try {
+				more = scanner.scanSome(s.tokens, BATCH) && !closed;
+			} catch (Throwable ex) {
+				failure = ex;
+				more = false;
+			}
+			ids = newNames(s, ids);
+			s.end = !more;
+			published = ++n;
+			if (consumerWaiting)
+				LockSupport.unpark(consumer);
+		}
+	}
+
+	// Puts the names of the ids from first on into s; returns the next
+	// new id.
+	private static int newNames(Slot s, int first) {
+		IdTable table = s.tokens.ids();
+		int count = table == null ? 0 : table.size() - first;
+		if (count > s.names.length)
+			s.names = new CharSequence[Math.max(count, 2 * s.names.length)];
+		for (int i = 0; i < count; i++)
+			s.names[i] = table.name(first + i);
+		s.firstId = first;
+		s.nameCount = count;
+		return first + count;
+	}
+
+	// Moves to the next token and returns its kind, or sym.EOF at the end
+	// of the input.  Throws the scanner's failure once the tokens before
+	// it are used up.
+	int advance() throws IOException {
+		while (slot == null || ++pos == slot.tokens.size()) {
+			if (slot != null) {
+				boolean end = slot.end;
+				release();
+				if (end) {
+					done = true;
+					rethrow();
+				}
+			}
+			if (done)
+				return sym.EOF;
+			take();
+		}
+		return slot.tokens.kind(pos);
+	}
+
+	int line() {
+		return slot.tokens.line(pos);
+	}
+
+	int column() {
+		return slot.tokens.column(pos);
+	}
+
+	// value of an INTLITERAL token
+	int intValue() {
+		return slot.tokens.intValue(pos);
+	}
+
+	// id of an ID token
+	int id() {
+		return slot.tokens.id(pos);
+	}
+
+	// text of an ID or STRINGLITERAL token; that of a STRINGLITERAL only
+	// holds until the next advance()
+	CharSequence text() {
+		if (slot.tokens.kind(pos) == sym.ID)
+			return names[slot.tokens.id(pos)];
+		return slot.tokens.text(pos);
+	}
+
+	public Symbol next_token() throws IOException {
+		int kind = advance();
+		switch (kind) {
+			case sym.EOF:
+				return new Symbol(sym.EOF);
+			case sym.ID:
+				return new Symbol(kind, new IdTokenVal(line(), column(), id(), text()));
+			case sym.INTLITERAL:
+				return new Symbol(kind, new IntLitTokenVal(line(), column(), intValue()));
+			case sym.STRINGLITERAL:
+				return new Symbol(kind, new StringLitTokenVal(line(), column(), text().toString()));
+			default:
+				return new Symbol(kind, new TokenVal(line(), column()));
+		}
+	}
+
+	// Waits for the next batch and takes in the names that come with it.
+	private void take() throws IOException {
+		long n = released;
+		while (published == n) {
+			consumer = Thread.currentThread();
+			consumerWaiting = true;
+			if (published == n)
+				pause();
+			consumerWaiting = false;
+			if (Thread.interrupted()) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("scan interrupted");
+			}
+		}
+		slot = slots[(int) (n % SLOTS)];
+		pos = -1;
+		int end = slot.firstId + slot.nameCount;
+		if (end > names.length)
+			names = Arrays.copyOf(names, Math.max(end, 2 * names.length));
+		System.arraycopy(slot.names, 0, names, slot.firstId, slot.nameCount);
+	}
+
+	// Hands the current batch back to the producer.
+	private void release() {
+		slot = null;
+		released++;
+		if (producerWaiting)
+			LockSupport.unpark(producer);
+	}
+
+	private void rethrow() throws IOException {
+		Throwable ex = failure;
+		if (ex == null)
+			return;
+		if (ex instanceof IOException)
+			throw (IOException) ex;
+		if (ex instanceof RuntimeException)
+			throw (RuntimeException) ex;
+		throw (Error) ex;
+	}
+
+	// Spins for a while, then parks until the other side wakes it; the
+	// caller checks again.  Each side sets its waiting flag before its
+	// last check of the other's counter, and the other side reads the
+	// flag after moving its counter (all volatile), so a wakeup is never
+	// missed.
+	private static void pause() {
+		for (int i = 0; i < SPINS; i++)
+			Thread.onSpinWait();
+		LockSupport.park();
+	}
+
+	// Stops the scanner thread at the end of its batch and closes the
+	// scanner.
+	public void close() throws IOException {
+		closed = true;
+		LockSupport.unpark(producer);
+		try {
+			producer.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		scanner.yyclose();
+	}
+}
@@ -0,0 +1,130 @@
+import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// ReadAheadReader
+//
+// A Reader that reads another Reader on a thread of its own, a block
+// ahead of its caller (P2 -readahead), so that while the scanner works
+// on one block the next is being read.  There are two blocks: the
+// reading thread fills one while the caller takes the other, and waits
+// when both are full.  The caller gets the same characters in the same
+// order as from the Reader itself, only cut up differently, which
+// Yylex's refill does not care about.  An IOException of the reading
+// thread is thrown by the read that reaches it.
+//
+// One thread reads, one thread calls; close() stops the reading thread
+// and closes the Reader.
+
+class ReadAheadReader extends Reader {
+	static final int BLOCK_SIZE = 1 << 16;
+
+	private static final int BLOCKS = 2;
+
+	// a filled block: count chars, or the end of the input (-1), or a
+	// failure
+	private static class Block {
+		final char[] chars;
+		int count;
+		IOException failure;
+
+		Block(int size) {
+			chars = new char[size];
+		}
+	}
+
+	private final Reader in;
+	private final BlockingQueue<Block> empty = new ArrayBlockingQueue<Block>(BLOCKS);
+	private final BlockingQueue<Block> full = new ArrayBlockingQueue<Block>(BLOCKS);
+	private final Thread reader;
+
+	// the block being taken, and how much of it was
+	private Block current;
+	private int pos;
+	private boolean closed;
+
+	ReadAheadReader(Reader in) {
+		this(in, BLOCK_SIZE);
+	}
+
+	ReadAheadReader(Reader in, int blockSize) {
+		this.in = in;
+		for (int i = 0; i < BLOCKS; i++)
+			empty.add(new Block(blockSize));
+		reader = new Thread(this::fill, "read-ahead");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	// the reading thread: fills blocks until the end of the input
+	private void fill() {
+		try {
+			while (true) {
+				Block b = empty.take();
+				int n = 0;
+				try {
+					while (n < b.chars.length) {
+						int read = in.read(b.chars, n, b.chars.length - n);
+						if (read < 0)
+							break;
+						n += read;
+					}
+				} catch (IOException ex) {
+					b.failure = ex;
+				}
+				b.count = n == 0 && b.failure == null ? -1 : n;
+				full.put(b);
+				if (b.count < 0 || b.failure != null)
+					return;
+			}
+		} catch (InterruptedException ex) {
+			// closed
+		}
+	}
+
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+		if (len == 0)
+			return 0;
+		if (current == null || pos == current.count) {
+			if (current != null) {
+				if (current.failure != null)
+					throw current.failure;   // and again on every read after
+				empty.add(current);
+			}
+			try {
+				current = full.take();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("read interrupted");
+			}
+			pos = 0;
+		}
+		if (current.count < 0) {
+			// the end stays in place for every read after
+			return -1;
+		}
+		if (pos == current.count) {
+			// an empty block that carries a failure
+			return read(cbuf, off, len);
+		}
+		int n = Math.min(len, current.count - pos);
+		System.arraycopy(current.chars, pos, cbuf, off, n);
+		pos += n;
+		return n;
+	}
+
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		reader.interrupt();
+		try {
+			reader.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		in.close();
+	}
+}
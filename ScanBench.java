@@ -0,0 +1,154 @@
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToLongFunction;
+
+// ScanBench
+//
+// The ways of scanning a file that the JMH benchmark bench.ScanBenchmark
+// measures, and the inputs it generates.  JMH wants its benchmarks in a
+// package, and code in a package cannot name the scanner's classes,
+// which are in the default package; so the benchmark looks up way() by
+// reflection once and then calls the functions it returns.  Each takes
+// a file name and returns the number of tokens:
+//
+//   reader   next_token() over a FileReader
+//   ahead    next_token() over a FileReader read ahead (ReadAheadReader)
+//   mmap     next_token() over a memory mapping (Yylex.mapped)
+//   bulk     Yylex.scanAll into a TokenBuffer
+//   slices   Yylex.scanAll over the input read whole (Yylex.retained)
+//   p2       P2.run on the file, as from the command line, with its
+//            output formatted and thrown away; returns the exit status
+//
+// With a latency, every read of the file (8 KB at a time) first waits
+// that many microseconds, as if from slow storage; the mmap and p2 ways
+// are not slowed down.
+
+class ScanBench {
+	static final String[] PROFILES = {
+		"ident", "literal", "comment", "string", "whitespace"
+	};
+
+	// Returns the way of scanning called name.
+	static ToLongFunction<String> way(String name, long latency) {
+		switch (name) {
+			case "reader":
+				return f -> count(new Yylex(reader(f, latency)));
+			case "ahead":
+				return f -> count(new Yylex(new ReadAheadReader(reader(f, latency))));
+			case "mmap":
+				return f -> {
+					try {
+						return count(Yylex.mapped(f));
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				};
+			case "bulk":
+				return f -> scanAll(new Yylex(reader(f, latency)));
+			case "slices":
+				return f -> {
+					try {
+						return scanAll(Yylex.retained(reader(f, latency), new File(f).length()));
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				};
+			case "p2":
+				return f -> {
+					PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+					return P2.run(ScanOptions.parse(new String[] { f }), OutputStream.nullOutputStream(), discard);
+				};
+			default:
+				throw new IllegalArgumentException("no way " + name);
+		}
+	}
+
+	private static long count(Yylex scanner) {
+		try {
+			long count = 0;
+			while (scanner.next_token().sym != sym.EOF)
+				count++;
+			scanner.yyclose();
+			return count;
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static long scanAll(Yylex scanner) {
+		try {
+			TokenBuffer buf = new TokenBuffer();
+			scanner.scanAll(buf);
+			scanner.yyclose();
+			return buf.size();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	// a reader for fileName, as slow as latency says
+	private static Reader reader(String fileName, long latency) {
+		try {
+			if (latency == 0)
+				return new FileReader(fileName);
+			return new InputStreamReader(new FilterInputStream(new FileInputStream(fileName)) {
+				public int read(byte[] b, int off, int len) throws IOException {
+					LockSupport.parkNanos(latency * 1000);
+					return super.read(b, off, len);
+				}
+			});
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	// Writes about size bytes of the given profile to f.
+	static void generate(String profile, int size, File f) throws IOException {
+		Random random = new Random(profile.hashCode());
+		String[] names = { "x", "count", "total_sum", "i", "buffer2", "Node", "a1b2c3" };
+		try (Writer out = new BufferedWriter(new FileWriter(f))) {
+			StringBuilder line = new StringBuilder();
+			int written = 0;
+			while (written < size) {
+				line.setLength(0);
+				switch (profile) {
+					case "ident":
+						for (int i = 0; i < 10; i++)
+							line.append(names[random.nextInt(names.length)]).append(i % 3 == 0 ? " = " : " ");
+						line.append(';');
+						break;
+					case "literal":
+						for (int i = 0; i < 12; i++)
+							line.append(random.nextInt(Integer.MAX_VALUE)).append(", ");
+						break;
+					case "comment":
+						line.append("/* ");
+						for (int i = 0; i < 8; i++)
+							line.append("this block comment explains ").append(names[random.nextInt(names.length)]).append(' ');
+						line.append("*/ x = 1; // and a line comment");
+						break;
+					case "string":
+						line.append("s = \"");
+						for (int i = 0; i < 6; i++)
+							line.append("some text with \\\"quotes\\\" and \\t tabs ");
+						line.append("\";");
+						break;
+					case "whitespace":
+						line.append("x");
+						for (int i = 0; i < 8; i++) {
+							for (int j = random.nextInt(16); j >= 0; j--)
+								line.append(j % 4 == 0 ? '\t' : ' ');
+							line.append("+ y");
+						}
+						break;
+					default:
+						throw new IllegalArgumentException("no profile " + profile);
+				}
+				line.append('\n');
+				out.append(line);
+				written += line.length();
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// ScanClient
+//
+// Has a ScanDaemon run P2: sends it the working directory, the charsets
+// of its files and of its output, and the arguments, copies its output
+// to standard output and error, and exits with P2's status.  It loads
+// none of the scanner's classes, not even ScanDaemon, so it starts about
+// as fast as any Java program.  If no daemon is running, it runs P2
+// itself, so it can always be used in place of P2.
+//
+// usage: java ScanClient [P2 arguments]
+
+class ScanClient {
+	// frame types of a reply (see ScanDaemon)
+	static final int STDOUT = 1;
+	static final int STDERR = 2;
+	static final int EXIT = 3;
+
+	// The socket used when none is given: $SIMPLE_SCAN_SOCKET, or
+	// simple-scan-<user>.sock in the temporary directory.
+	static Path socket() {
+		String path = System.getenv("SIMPLE_SCAN_SOCKET");
+		if (path != null)
+			return Paths.get(path);
+		// no + here: bootstrapping string concatenation would add tens of
+		// milliseconds to the start of the client
+		String name = new StringBuilder("simple-scan-").append(System.getProperty("user.name"))
+				.append(".sock").toString();
+		return Paths.get(System.getProperty("java.io.tmpdir"), name);
+	}
+
+	public static void main(String[] args) throws IOException {
+		SocketChannel channel;
+		try {
+			channel = SocketChannel.open(UnixDomainSocketAddress.of(socket()));
+		} catch (IOException ex) {
+			P2.main(args);
+			return;
+		}
+
+		int status;
+		try (channel) {
+			DataOutputStream request = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel)));
+			request.writeUTF(System.getProperty("user.dir"));
+			String charset = Charset.defaultCharset().name();
+			request.writeUTF(charset);
+			request.writeUTF(System.getProperty("stdout.encoding", charset));
+			request.writeInt(args.length);
+			for (String arg : args)
+				request.writeUTF(arg);
+			request.flush();
+
+			DataInputStream reply = new DataInputStream(
+					new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+			OutputStream out = new FileOutputStream(FileDescriptor.out);
+			OutputStream err = new FileOutputStream(FileDescriptor.err);
+			byte[] buf = new byte[1 << 16];
+			while (true) {
+				int type = reply.readByte();
+				int n = reply.readInt();
+				if (type == EXIT) {
+					status = n;
+					break;
+				}
+				OutputStream to = type == STDOUT ? out : err;
+				while (n > 0) {
+					int len = Math.min(n, buf.length);
+					reply.readFully(buf, 0, len);
+					n -= len;
+					if (to == null)
+						continue;
+					try {
+						to.write(buf, 0, len);
+					} catch (IOException ex) {
+						// like P2, go on when the output is closed
+						if (to == out)
+							out = null;
+						else
+							err = null;
+						to = null;
+					}
+				}
+			}
+		} catch (EOFException ex) {
+			System.err.println("ScanClient: the scan daemon closed the connection");
+			status = -1;
+		}
+		if (status != 0)
+			System.exit(status);
+	}
+}
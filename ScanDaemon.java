@@ -0,0 +1,166 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// ScanDaemon
+//
+// Runs P2 for ScanClient in a JVM that stays up, so a scan does not pay
+// for starting the JVM, initializing Yylex's tables and compiling the
+// scanner every time.  Before it accepts requests it scans a sample
+// program until the JIT has compiled the scanner and the token dump.
+//
+// The daemon listens on a Unix domain socket and serves each connection
+// on a thread of its own.  A request is the client's working directory,
+// charsets and P2's arguments, written with DataOutputStream: the
+// directory, the name of the charset to decode files with, the name of
+// the charset to encode the output with, the number of arguments and the
+// arguments, each string with writeUTF.  So a scan reads and writes text
+// as P2 run by the client would, whatever the daemon's own charset.  The
+// reply is a series of frames, each a type byte followed by an int:
+// STDOUT and STDERR give the length of the bytes that follow, which go
+// to the client's standard output or error, and EXIT, the last frame,
+// gives P2's exit status.  ScanClient defines the frame types.
+//
+// usage: java ScanDaemon [socket]      (default: see ScanClient.socket())
+
+class ScanDaemon {
+	private static final String SAMPLE =
+		"public class Sample {\n"
+		+ "\tstatic int count;\n"
+		+ "\t// a line comment\n"
+		+ "\tpublic static boolean run(String name, int n) {\n"
+		+ "\t\t/* a block comment */\n"
+		+ "\t\tif (count <= 10 && !(n > 3) || n >= 12345) { count = count + 1 * 2 / 4 - n; }\n"
+		+ "\t\twhile (n != count) do { System.out.println(\"text \\\"quoted\\\"\\n\"); }\n"
+		+ "\t\tswitch (n) { case 1 { n = 0; } default { } }\n"
+		+ "\t\treturn true == false;\n"
+		+ "\t}\n"
+		+ "}\n";
+
+	public static void main(String[] args) throws IOException {
+		Path path = args.length > 0 ? Paths.get(args[0]) : ScanClient.socket();
+		UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+		try {
+			SocketChannel.open(address).close();
+			System.err.println("ScanDaemon: already running on " + path);
+			System.exit(-1);
+		} catch (IOException ex) {
+			// no daemon there; a socket file left behind is replaced
+		}
+
+		warmUp();
+
+		Files.deleteIfExists(path);
+		ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		server.bind(address);
+		path.toFile().deleteOnExit();
+		System.err.println("ScanDaemon: listening on " + path);
+
+		ExecutorService pool = Executors.newCachedThreadPool();
+		while (true) {
+			SocketChannel client = server.accept();
+			pool.execute(() -> serve(client));
+		}
+	}
+
+	// Scans SAMPLE in both of P2's ways until the hot code is compiled.
+	private static void warmUp() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			text.append(SAMPLE);
+		PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+		for (int round = 0; round < 40; round++) {
+			ScanOptions opts = new ScanOptions();
+			opts.bulk = round % 2 == 1;
+			TokenWriter out = new TokenWriter(OutputStream.nullOutputStream());
+			Yylex scanner = new Yylex(new StringReader(text.toString()));
+			scanner.setDiagnostics(new Diagnostics(discard));
+			P2.scan(scanner, opts, out, discard);
+		}
+	}
+
+	// Runs one request.
+	private static void serve(SocketChannel channel) {
+		try (channel) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			Path dir = Paths.get(in.readUTF());
+			String charset = in.readUTF();
+			String output = in.readUTF();
+			String[] args = new String[in.readInt()];
+			for (int i = 0; i < args.length; i++)
+				args[i] = in.readUTF();
+
+			DataOutputStream reply = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			ScanOptions opts = ScanOptions.parse(args);
+			opts.dir = dir;
+			opts.charset = charset(charset, opts);
+			// as TokenWriter.outputCharset(), an unknown stdout.encoding
+			// falls back to the default charset
+			opts.output = supported(output) ? Charset.forName(output) : opts.charset;
+			PrintStream err = new PrintStream(new FrameStream(reply, ScanClient.STDERR), true, opts.output);
+			int status;
+			try {
+				status = P2.run(opts, new FrameStream(reply, ScanClient.STDOUT), err);
+			} catch (RuntimeException | Error ex) {
+				// what the JVM prints when P2 dies of it
+				err.print("Exception in thread \"main\" ");
+				ex.printStackTrace(err);
+				status = 1;
+			}
+			err.flush();
+			reply.writeByte(ScanClient.EXIT);
+			reply.writeInt(status);
+			reply.flush();
+		} catch (IOException ex) {
+			// the client has gone away
+		}
+	}
+
+	// the charset called name, or if the daemon has none by that name, the
+	// default one and an error in opts
+	private static Charset charset(String name, ScanOptions opts) {
+		if (supported(name))
+			return Charset.forName(name);
+		opts.fail("the scan daemon does not support charset " + name);
+		return Charset.defaultCharset();
+	}
+
+	private static boolean supported(String name) {
+		try {
+			return Charset.isSupported(name);
+		} catch (IllegalArgumentException ex) {
+			return false;
+		}
+	}
+
+	// writes everything written to it to a reply as frames of one type
+	private static class FrameStream extends OutputStream {
+		private final DataOutputStream reply;
+		private final int type;
+
+		FrameStream(DataOutputStream reply, int type) {
+			this.reply = reply;
+			this.type = type;
+		}
+
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return;
+			synchronized (reply) {
+				reply.writeByte(type);
+				reply.writeInt(len);
+				reply.write(b, off, len);
+			}
+		}
+	}
+}
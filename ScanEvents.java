@@ -0,0 +1,119 @@
+import jdk.jfr.*;
+
+// ScanEvents
+//
+// The JDK Flight Recorder events of the scanner, committed from
+// ScanMetrics at the end of each scan:
+//
+//   simple.Scan        one per file, lasting from the start of the scan
+//                      to its end, with the totals of ScanMetrics
+//   simple.TokenCount  one per token kind that occurred in the file
+//
+// Record them with e.g.
+//     java -XX:StartFlightRecording=filename=scan.jfr P2 big.sim
+//     jfr print --categories Simple scan.jfr
+//
+// Loading the first event class makes the JVM set up JFR, which takes a
+// third of a second when no recording runs, so ScanMetrics only calls
+// in here when FlightRecorder.isInitialized().
+
+class ScanEvents {
+	@Name("simple.Scan")
+	@Label("Scan")
+	@Category("Simple")
+	@Description("A file scanned by Yylex")
+	static class Scan extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Bytes")
+		@Description("Bytes of input scanned, as the characters scanned take in the charset they were decoded from")
+		@DataAmount
+		long bytes;
+
+		@Label("Characters")
+		long chars;
+
+		@Label("Tokens")
+		long tokens;
+
+		@Label("Refills")
+		@Description("Reads into the scanner's buffer")
+		long refills;
+
+		@Label("Buffer Growths")
+		long growths;
+
+		@Label("NORMAL Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long normalTime;
+
+		@Label("STRING Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long stringTime;
+
+		@Label("COMMENT Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long commentTime;
+
+		@Label("Diagnostics")
+		long diagnostics;
+	}
+
+	@Name("simple.TokenCount")
+	@Label("Token Count")
+	@Category("Simple")
+	@Description("The tokens of one kind in a file scanned by Yylex")
+	static class TokenCount extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Kind")
+		String kind;
+
+		@Label("Count")
+		long count;
+	}
+
+	static boolean enabled() {
+		return new Scan().isEnabled();
+	}
+
+	// Returns a begun simple.Scan event.
+	static Object begin() {
+		Scan event = new Scan();
+		event.begin();
+		return event;
+	}
+
+	// Commits event, a simple.Scan from begin(), with the figures of m,
+	// and a simple.TokenCount for each kind of token m counted.
+	static void commit(Object event, ScanMetrics m) {
+		Scan scan = (Scan) event;
+		scan.end();
+		if (scan.shouldCommit()) {
+			scan.file = m.file;
+			scan.bytes = m.bytes;
+			scan.chars = m.chars;
+			scan.tokens = m.tokens;
+			scan.refills = m.refills;
+			scan.growths = m.growths;
+			scan.normalTime = m.stateNanos[ScanMetrics.NORMAL];
+			scan.stringTime = m.stateNanos[ScanMetrics.STRING];
+			scan.commentTime = m.stateNanos[ScanMetrics.COMMENT];
+			scan.diagnostics = m.diagnostics;
+			scan.commit();
+		}
+		for (int kind = 0; kind < m.kinds.length; kind++) {
+			if (m.kinds[kind] == 0)
+				continue;
+			TokenCount count = new TokenCount();
+			if (count.isEnabled()) {
+				count.file = m.file;
+				count.kind = ScanMetrics.kindName(kind);
+				count.count = m.kinds[kind];
+				count.commit();
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// ScanMetrics
+//
+// What one Yylex did: the bytes, characters and tokens it scanned, the
+// tokens of each kind, how often it refilled zzBuffer and how often it
+// had to grow it, the time it spent in each lexical state, and the
+// diagnostics it reported.  A scanner only counts after enableMetrics();
+// until then it pays a null check per token.  With metrics, it reads the
+// clock twice per token and once per change of lexical state; the time
+// between two calls of next_token() is not counted.
+//
+// print() writes a summary (P2 -metrics).  commit() records the figures
+// as JDK Flight Recorder events (see ScanEvents) if a recording wants
+// them.
+
+class ScanMetrics {
+	// the lexical states timed
+	static final int NORMAL = 0;
+	static final int STRING = 1;
+	static final int COMMENT = 2;
+	private static final String[] STATES = { "NORMAL", "STRING", "COMMENT" };
+
+	final String file;
+	long bytes;
+	long chars;
+	long tokens;
+	final long[] kinds = new long[64];   // tokens by sym code
+	long refills;
+	long growths;
+	final long[] stateNanos = new long[STATES.length];
+	long diagnostics;
+
+	private int bufferSize;
+	private long since;
+
+	// The scanner reads chars, so the bytes are those the chars take in
+	// the charset the input was decoded from (see setCharset).  That is
+	// the input's size for UTF-8 and single-byte charsets, except that a
+	// malformed UTF-8 sequence counts as the 3 bytes of the U+FFFD it was
+	// decoded to.
+	private Charset charset;
+	private boolean utf8;
+	private boolean singleByte;
+
+	// the simple.Scan event, begun with the scan, if one is recorded
+	private final Object event;
+
+	ScanMetrics(String file, int bufferSize) {
+		this.file = file;
+		this.bufferSize = bufferSize;
+		event = recording() ? ScanEvents.begin() : null;
+		setCharset(Charset.defaultCharset());
+	}
+
+	// Sets the charset the input is decoded from, if not the default.
+	void setCharset(Charset charset) {
+		this.charset = charset;
+		utf8 = charset.equals(StandardCharsets.UTF_8);
+		singleByte = charset.newEncoder().maxBytesPerChar() == 1;
+	}
+
+	// Returns whether a Flight Recorder recording wants scan events.  It
+	// does not touch an event class unless JFR is running (see ScanEvents).
+	static boolean recording() {
+		return jdk.jfr.FlightRecorder.isInitialized() && ScanEvents.enabled();
+	}
+
+	// Returns a Reader that counts the reads (one per refill of zzBuffer)
+	// and the characters read from in, and the bytes they were decoded
+	// from.
+	Reader reader(Reader in) {
+		return new Reader() {
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				refills++;
+				int n = in.read(cbuf, off, len);
+				if (n > 0) {
+					chars += n;
+					bytes += byteLength(cbuf, off, n);
+				}
+				return n;
+			}
+
+			public void close() throws IOException {
+				in.close();
+			}
+		};
+	}
+
+	// Returns the number of bytes len chars from cbuf[off] take in the
+	// charset.
+	private long byteLength(char[] cbuf, int off, int len) {
+		if (singleByte)
+			return len;
+		if (!utf8)
+			return new String(cbuf, off, len).getBytes(charset).length;
+		long n = 0;
+		for (int i = off; i < off + len; i++) {
+			char c = cbuf[i];
+			if (c < 0x80)
+				n++;
+			else if (c < 0x800 || Character.isSurrogate(c))
+				n += 2;   // a surrogate pair takes 4
+			else
+				n += 3;
+		}
+		return n;
+	}
+
+	// Starts the clock for a call of next_token().
+	void start(long now) {
+		since = now;
+	}
+
+	// Adds the time since the last start() or time() to state.
+	void time(int state, long now) {
+		stateNanos[state] += now - since;
+		since = now;
+	}
+
+	// Counts a token of kind; bufferSize is the size of zzBuffer after it.
+	void token(int kind, int bufferSize) {
+		if (kind != sym.EOF) {
+			tokens++;
+			kinds[kind]++;
+		}
+		if (bufferSize != this.bufferSize) {
+			// zzRefill doubles the buffer, maybe several times for one token
+			for (long n = this.bufferSize; n < bufferSize; n *= 2)
+				growths++;
+			this.bufferSize = bufferSize;
+		}
+	}
+
+	// Records the figures as Flight Recorder events, if they are wanted.
+	void commit() {
+		if (event != null)
+			ScanEvents.commit(event, this);
+	}
+
+	// Writes a summary like
+	//     metrics: 5214 bytes, 5210 chars, 1043 tokens, 2 refills, 0 buffer growths, 3 diagnostics
+	//       time: NORMAL 1.204 ms, STRING 0.101 ms, COMMENT 0.032 ms
+	//       tokens: ID 310, SEMICOLON 120, ...
+	// with the token kinds in order of decreasing count.
+	void print(PrintStream err) {
+		StringBuilder s = new StringBuilder();
+		s.append("metrics: ").append(bytes).append(" bytes, ").append(chars).append(" chars, ")
+				.append(tokens).append(" tokens, ")
+				.append(refills).append(" refills, ").append(growths).append(" buffer growths, ")
+				.append(diagnostics).append(" diagnostics").append(System.lineSeparator()).append("  time:");
+		for (int i = 0; i < STATES.length; i++)
+			s.append(i == 0 ? " " : ", ").append(STATES[i]).append(' ')
+					.append(String.format("%.3f", stateNanos[i] / 1e6)).append(" ms");
+		s.append(System.lineSeparator()).append("  tokens:");
+		Integer[] order = new Integer[kinds.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Long.compare(kinds[b], kinds[a]));
+		boolean first = true;
+		for (int kind : order) {
+			if (kinds[kind] == 0)
+				break;
+			s.append(first ? " " : ", ").append(kindName(kind)).append(' ').append(kinds[kind]);
+			first = false;
+		}
+		err.println(s);
+	}
+
+	// Returns the name of the sym constant for kind.
+	static String kindName(int kind) {
+		String name = Names.NAMES[kind];
+		return name != null ? name : Integer.toString(kind);
+	}
+
+	// the names of the sym constants, made when first needed
+	private static class Names {
+		static final String[] NAMES = new String[64];
+
+		static {
+			try {
+				for (Field f : sym.class.getFields()) {
+					if (Modifier.isStatic(f.getModifiers()) && f.getType() == int.class)
+						NAMES[f.getInt(null)] = f.getName();
+				}
+			} catch (IllegalAccessException ex) {
+				// sym's fields are public
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// ScanOptions
+//
+// The command-line options of P2:
+//
+//   -mmap        memory-map the input instead of using a FileReader
+//   -readahead   read the input on a thread of its own, a block ahead of
+//                the scanner (see ReadAheadReader); -mmap takes precedence
+//   -bulk        scan each file into a TokenBuffer, then print it
+//   -pipeline    scan on a thread of its own, handing the tokens over in
+//                batches (see PipelinedScanner)
+//   -offheap     scan each file into a MappedTokenStore, then print it
+//   -slices      read each file into memory first, and keep identifiers
+//                and string literals as slices of it (see TextSlice)
+//   -threads n   number of threads for scanning several files
+//   -json        print diagnostics as JSON lines (see Diagnostics)
+//   -coalesce    merge runs of the same diagnostic into one
+//   -maxdiags n  print at most n diagnostics per file (default all)
+//   -metrics     print what the scanner did after each file (see ScanMetrics)
+//   -cache dir   keep the tokens of every file scanned in dir, and replay
+//                them when a file with the same contents is scanned again
+//                (see TokenCache); -mmap, -bulk and -slices do not apply
+//   -cachesize n let the cache take at most n MB (default 256)
+//   -binary      write the tokens in binary (see BinaryTokenWriter); one
+//                file only
+//   -decode      the files are binary token streams; print their tokens
+//   -split n     scan one file in chunks of about n KB on -threads threads
+//                (see ChunkedScanner); -metrics does not apply
+//
+// Every other argument names a file or directory to scan.  Relative
+// names are resolved against dir, if it is set (ScanDaemon sets it to
+// the client's working directory).  Files are decoded with charset and
+// the output is encoded with output; ScanDaemon sets them to the
+// client's.
+//
+// A number must be a whole number of at least 1.  -bulk, -pipeline,
+// -offheap, -split, -cache and -decode are different ways of scanning,
+// of which at most one may be given, though -cache, which writes the
+// tokens as -bulk does, may come with -bulk.  -binary cannot come with
+// -pipeline, -offheap or -decode.  parse() records the first problem
+// in error, and P2 prints it instead of scanning.
+
+class ScanOptions {
+	boolean mapped;
+	boolean readAhead;
+	boolean bulk;
+	boolean offheap;
+	boolean pipeline;
+	boolean slices;
+	boolean json;
+	boolean coalesce;
+	int maxDiagnostics = Diagnostics.NO_MAX;
+	boolean metrics;
+	String cache;
+	long cacheSize = 256L << 20;
+	boolean binary;
+	boolean decode;
+	int split;
+	int threads = Runtime.getRuntime().availableProcessors();
+	List<String> files = new ArrayList<String>();
+	Path dir;
+	Charset charset = Charset.defaultCharset();
+	Charset output = TokenWriter.outputCharset();
+	String error;
+
+	static ScanOptions parse(String[] args) {
+		ScanOptions opts = new ScanOptions();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-mmap"))
+				opts.mapped = true;
+			else if (args[i].equals("-readahead"))
+				opts.readAhead = true;
+			else if (args[i].equals("-bulk"))
+				opts.bulk = true;
+			else if (args[i].equals("-pipeline"))
+				opts.pipeline = true;
+			else if (args[i].equals("-offheap"))
+				opts.offheap = true;
+			else if (args[i].equals("-slices"))
+				opts.slices = true;
+			else if (args[i].equals("-threads"))
+				opts.threads = (int) opts.number(args, ++i, Integer.MAX_VALUE);
+			else if (args[i].equals("-json"))
+				opts.json = true;
+			else if (args[i].equals("-coalesce"))
+				opts.coalesce = true;
+			else if (args[i].equals("-maxdiags"))
+				opts.maxDiagnostics = (int) opts.number(args, ++i, Integer.MAX_VALUE);
+			else if (args[i].equals("-metrics"))
+				opts.metrics = true;
+			else if (args[i].equals("-cache") && i + 1 < args.length)
+				opts.cache = args[++i];
+			else if (args[i].equals("-cachesize"))
+				opts.cacheSize = opts.number(args, ++i, Long.MAX_VALUE >> 20) << 20;
+			else if (args[i].equals("-binary"))
+				opts.binary = true;
+			else if (args[i].equals("-decode"))
+				opts.decode = true;
+			else if (args[i].equals("-split"))
+				opts.split = (int) opts.number(args, ++i, Integer.MAX_VALUE);
+			else
+				opts.files.add(args[i]);
+		}
+		opts.checkModes();
+		return opts;
+	}
+
+	// Returns args[i], the value of the option before it, as a number from
+	// 1 to max.  If it is not one, records the problem and returns 1.
+	private long number(String[] args, int i, long max) {
+		String option = args[i - 1];
+		if (i == args.length) {
+			fail(option + " needs a number");
+			return 1;
+		}
+		try {
+			long n = Long.parseLong(args[i]);
+			if (n >= 1 && n <= max)
+				return n;
+		} catch (NumberFormatException ex) {
+			// reported below
+		}
+		fail(option + " needs a number from 1 to " + max + ", not " + args[i]);
+		return 1;
+	}
+
+	// Records a problem with two options that do not go together.
+	private void checkModes() {
+		String mode = null;
+		String[] names = { "-bulk", "-pipeline", "-offheap", "-split", "-cache", "-decode" };
+		boolean[] given = { bulk && cache == null, pipeline, offheap, split > 0, cache != null, decode };
+		for (int i = 0; i < names.length; i++) {
+			if (!given[i])
+				continue;
+			if (mode != null)
+				fail(mode + " and " + names[i] + " cannot be used together");
+			mode = names[i];
+		}
+		if (binary && (pipeline || offheap || decode))
+			fail("-binary cannot be used with " + (pipeline ? "-pipeline" : offheap ? "-offheap" : "-decode"));
+	}
+
+	// Records a problem with the options, unless there was one before.
+	void fail(String problem) {
+		if (error == null)
+			error = problem;
+	}
+
+	// path, resolved against dir
+	Path resolve(Path path) {
+		return dir == null ? path : dir.resolve(path);
+	}
+}
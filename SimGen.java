@@ -0,0 +1,328 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// SimGen
+//
+// Generates Simple programs of any size, for testing and measuring the
+// scanner.  The output is a series of classes with static fields and
+// methods whose bodies nest if, while, switch and blocks.  It depends
+// only on the options, so the same seed always gives the same file, and
+// it is written as it is generated, so a file of many GB needs no more
+// heap than a small one.
+//
+// usage: java SimGen [options] [output.sim]         (default: stdout)
+//   -seed n          random seed (default 1)
+//   -size n[k|m|g]   stop after about this many bytes (default 1m)
+//   -vocab n         number of distinct identifiers (default 1000)
+//   -depth n         maximum nesting depth of statements (default 4)
+//   -strlen n        maximum length of string literals (default 20)
+//   -intlen n        maximum number of digits of int literals (default 6)
+//   -mix i,n,s       relative weights of identifiers, int literals and
+//                    string literals as operands (default 6,3,1)
+//   -comments p      chance of a comment before a statement (default 0.1)
+//   -illegal p       chance of an illegal character in a statement
+//   -unterminated p  chance of a statement followed by an unterminated
+//                    string or comment (both default 0)
+//   -unicode p       chance of a non-ASCII character, some outside the
+//                    BMP, for each character of string literals and
+//                    comments (default 0); the file is UTF-8
+
+class SimGen {
+	private static final String[] RESERVED = {
+		"String", "boolean", "class", "do", "else", "false", "if", "int",
+		"public", "return", "static", "true", "void", "while", "case",
+		"switch", "default"
+	};
+	private static final String[] OPERATORS = {
+		"+", "-", "*", "/", "&&", "||", "==", "!=", "<", ">", "<=", ">="
+	};
+	private static final String ILLEGAL = "#@$%^~`?&";
+	private static final String WORDS =
+		"the quick brown fox jumps over a lazy dog while scanning tokens ";
+	private static final String[] UNICODE = {
+		"\u00e9", "\u00df", "\u20ac", "\u4e2d", "\ud83d\ude00", "\ud834\udd1e"
+	};
+
+	private long seed = 1;
+	private long size = 1 << 20;
+	private int vocab = 1000;
+	private int depth = 4;
+	private int strlen = 20;
+	private int intlen = 6;
+	private int[] mix = { 6, 3, 1 };
+	private double comments = 0.1;
+	private double illegal;
+	private double unterminated;
+	private double unicode;
+
+	private Random random;
+	private String[] names;
+	private Writer out;
+	private long written;
+
+	public static void main(String[] args) throws IOException {
+		SimGen gen = new SimGen();
+		String fileName = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (!arg.startsWith("-") || i + 1 == args.length) {
+					fileName = arg;
+					continue;
+				}
+				String val = args[++i];
+				switch (arg) {
+					case "-seed": gen.seed = Long.parseLong(val); break;
+					case "-size": gen.size = parseSize(val); break;
+					case "-vocab": gen.vocab = Integer.parseInt(val); break;
+					case "-depth": gen.depth = Integer.parseInt(val); break;
+					case "-strlen": gen.strlen = Integer.parseInt(val); break;
+					case "-intlen": gen.intlen = Math.min(Integer.parseInt(val), 10); break;
+					case "-mix": gen.mix = parseMix(val); break;
+					case "-comments": gen.comments = Double.parseDouble(val); break;
+					case "-illegal": gen.illegal = Double.parseDouble(val); break;
+					case "-unterminated": gen.unterminated = Double.parseDouble(val); break;
+					case "-unicode": gen.unicode = Double.parseDouble(val); break;
+					default: throw new IllegalArgumentException("unknown option " + arg);
+				}
+			}
+		} catch (IllegalArgumentException ex) {
+			System.err.println("SimGen: " + ex.getMessage());
+			System.exit(-1);
+		}
+
+		OutputStream stream = fileName == null ? new FileOutputStream(FileDescriptor.out)
+				: new FileOutputStream(fileName);
+		try (Writer w = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16)) {
+			gen.generate(w);
+		}
+	}
+
+	private static long parseSize(String s) {
+		long unit = 1;
+		char last = Character.toLowerCase(s.charAt(s.length() - 1));
+		if (last == 'k' || last == 'm' || last == 'g') {
+			unit = last == 'k' ? 1L << 10 : last == 'm' ? 1L << 20 : 1L << 30;
+			s = s.substring(0, s.length() - 1);
+		}
+		return Long.parseLong(s) * unit;
+	}
+
+	private static int[] parseMix(String s) {
+		String[] parts = s.split(",");
+		if (parts.length != 3)
+			throw new IllegalArgumentException("-mix needs three weights");
+		int[] mix = new int[3];
+		for (int i = 0; i < 3; i++)
+			mix[i] = Integer.parseInt(parts[i].trim());
+		return mix;
+	}
+
+	// Writes classes to w until about size bytes have been written.
+	void generate(Writer w) throws IOException {
+		out = w;
+		written = 0;
+		random = new Random(seed);
+		names = new String[Math.max(vocab, 1)];
+		for (int i = 0; i < names.length; i++)
+			names[i] = name(i);
+
+		while (written < size) {
+			emit("public class " + ident() + " {\n");
+			for (int i = random.nextInt(3); i >= 0; i--)
+				emit("\tstatic " + type() + " " + ident() + ";\n");
+			for (int i = random.nextInt(4); i >= 0 && written < size; i--) {
+				emit("\n\tpublic static " + (random.nextBoolean() ? "void" : type()) + " "
+						+ ident() + "(" + type() + " " + ident() + ") {\n");
+				for (int j = 3 + random.nextInt(10); j >= 0 && written < size; j--)
+					statement(2, 0);
+				emit("\t}\n");
+			}
+			emit("}\n\n");
+		}
+	}
+
+	private void statement(int indent, int level) throws IOException {
+		if (random.nextDouble() < comments)
+			comment(indent);
+		if (random.nextDouble() < illegal)
+			emit(String.valueOf(ILLEGAL.charAt(random.nextInt(ILLEGAL.length()))));
+
+		tabs(indent);
+		if (level < depth && random.nextInt(10) < 3) {
+			switch (random.nextInt(4)) {
+				case 0:
+					emit("if (" + expression() + ") ");
+					block(indent, level);
+					if (random.nextBoolean()) {
+						emit(" else ");
+						block(indent, level);
+					}
+					break;
+				case 1:
+					emit("while (" + expression() + ") ");
+					block(indent, level);
+					break;
+				case 2:
+					// Simple has no ':', so the cases are blocks
+					emit("switch (" + ident() + ") {\n");
+					for (int i = random.nextInt(3); i >= 0; i--) {
+						tabs(indent + 1);
+						emit("case " + intLiteral() + " ");
+						block(indent + 1, level + 1);
+						emit("\n");
+					}
+					tabs(indent + 1);
+					emit("default ");
+					block(indent + 1, level + 1);
+					emit("\n");
+					tabs(indent);
+					emit("}");
+					break;
+				default:
+					block(indent, level);
+					break;
+			}
+		} else {
+			switch (random.nextInt(5)) {
+				case 0: emit(type() + " " + ident() + " = " + expression() + ";"); break;
+				case 1: emit("System.out.println(" + expression() + ");"); break;
+				case 2: emit("return " + expression() + ";"); break;
+				case 3: emit(ident() + "(" + expression() + ", " + operand() + ");"); break;
+				default: emit(ident() + " = " + expression() + ";"); break;
+			}
+		}
+		emit("\n");
+
+		if (random.nextDouble() < unterminated) {
+			// everything up to the next quote or */ becomes part of it
+			tabs(indent);
+			emit(random.nextBoolean() ? "\"" + text(strlen) + "\n" : "/* " + text(strlen) + "\n");
+		}
+	}
+
+	private void block(int indent, int level) throws IOException {
+		emit("{\n");
+		for (int i = random.nextInt(4); i >= 0; i--)
+			statement(indent + 1, level + 1);
+		tabs(indent);
+		emit("}");
+	}
+
+	private void comment(int indent) throws IOException {
+		tabs(indent);
+		if (random.nextBoolean())
+			emit("// " + text(60) + "\n");
+		else {
+			emit("/* " + text(60) + "\n");
+			tabs(indent);
+			emit(" * " + text(60) + " */\n");
+		}
+	}
+
+	private String expression() {
+		if (random.nextInt(8) == 0)
+			return "!(" + operand() + ")";
+		StringBuilder e = new StringBuilder(operand());
+		for (int i = random.nextInt(4); i > 0; i--)
+			e.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ').append(operand());
+		return e.toString();
+	}
+
+	private String operand() {
+		int r = random.nextInt(mix[0] + mix[1] + mix[2] + 1);
+		if (r < mix[0])
+			return ident();
+		if (r < mix[0] + mix[1])
+			return intLiteral();
+		if (r < mix[0] + mix[1] + mix[2])
+			return stringLiteral();
+		return random.nextBoolean() ? "true" : "false";
+	}
+
+	private String ident() {
+		return names[random.nextInt(names.length)];
+	}
+
+	private String type() {
+		switch (random.nextInt(3)) {
+			case 0: return "int";
+			case 1: return "boolean";
+			default: return "String";
+		}
+	}
+
+	private String intLiteral() {
+		int digits = 1 + random.nextInt(Math.max(intlen, 1));
+		long limit = 1;
+		for (int i = 0; i < digits; i++)
+			limit *= 10;
+		return String.valueOf(Math.min((long) (random.nextDouble() * limit), Integer.MAX_VALUE));
+	}
+
+	private String stringLiteral() {
+		StringBuilder s = new StringBuilder("\"");
+		int len = random.nextInt(strlen + 1);
+		for (int i = 0; i < len; i++) {
+			int r = random.nextInt(20);
+			if (r == 0)
+				s.append(random.nextBoolean() ? "\\n" : "\\t");
+			else if (r == 1)
+				s.append("\\\"");
+			else
+				s.append(WORDS.charAt(random.nextInt(WORDS.length())));
+			unicode(s);
+		}
+		return s.append('"').toString();
+	}
+
+	// plain words, without quotes or comment ends
+	private String text(int max) {
+		int start = random.nextInt(WORDS.length());
+		int len = 1 + random.nextInt(Math.max(max, 1));
+		StringBuilder s = new StringBuilder(len);
+		for (int i = 0; i < len; i++) {
+			s.append(WORDS.charAt((start + i) % WORDS.length()));
+			unicode(s);
+		}
+		return s.toString().trim();
+	}
+
+	// With chance -unicode, appends a non-ASCII character to s.  Draws
+	// nothing from random otherwise, so files without -unicode stay as
+	// they were.
+	private void unicode(StringBuilder s) {
+		if (unicode > 0 && random.nextDouble() < unicode)
+			s.append(UNICODE[random.nextInt(UNICODE.length)]);
+	}
+
+	// The i-th identifier: i in base 26 spelled with letters, and for
+	// some i a "_digit" suffix.  Reserved words get a trailing 0.
+	private static String name(int i) {
+		StringBuilder s = new StringBuilder();
+		for (int n = i; ; n /= 26) {
+			s.append((char) ('a' + n % 26));
+			if (n < 26)
+				break;
+		}
+		if (i % 7 == 3)
+			s.append('_').append(i % 10);
+		String name = s.toString();
+		for (String word : RESERVED) {
+			if (word.equals(name))
+				return name + "0";
+		}
+		return name;
+	}
+
+	private void tabs(int n) throws IOException {
+		for (int i = 0; i < n; i++)
+			emit("\t");
+	}
+
+	private void emit(String s) throws IOException {
+		out.write(s);
+		written += s.length();
+	}
+}
@@ -0,0 +1,88 @@
+// TextSlice
+//
+// A token text that is still in the source: length characters of source
+// from offset start.  Scanners made by Yylex.retained give their
+// identifiers and string literals as slices of the retained input, so
+// scanning allocates no String per token.  toString() makes the String
+// the first time it is asked for and keeps it.
+//
+// Two slices are equal if their characters are; hashCode() is the hash
+// String would give the same characters.  A slice is never equal to a
+// String (equals must be symmetric); compare those with contentEquals.
+
+class TextSlice implements CharSequence {
+	private final char[] source;
+	private final int start;
+	private final int length;
+	private int hash;
+	private String text;
+
+	TextSlice(char[] source, int start, int length) {
+		this.source = source;
+		this.start = start;
+		this.length = length;
+	}
+
+	// offset of the first character in the source
+	int start() {
+		return start;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+		return source[start + index];
+	}
+
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > length || from > to)
+			throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", length " + length);
+		return new TextSlice(source, start + from, to - from);
+	}
+
+	// Returns whether s holds the same characters.
+	boolean contentEquals(CharSequence s) {
+		if (s.length() != length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) != source[start + i])
+				return false;
+		}
+		return true;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof TextSlice))
+			return false;
+		TextSlice s = (TextSlice) o;
+		if (s.length != length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (s.source[s.start + i] != source[start + i])
+				return false;
+		}
+		return true;
+	}
+
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			for (int i = start; i < start + length; i++)
+				h = 31 * h + source[i];
+			hash = h;
+		}
+		return h;
+	}
+
+	public String toString() {
+		if (text == null)
+			text = new String(source, start, length);
+		return text;
+	}
+}
@@ -0,0 +1,199 @@
+import java.util.Arrays;
+
+// TokenBuffer
+//
+// A whole token stream in parallel primitive arrays, filled by
+// Yylex.scanAll.  Token i has a kind (a sym code), the line and character
+// number it starts at, and a value: the literal itself for INTLITERAL,
+// the id in the scanner's IdTable for ID, and for STRINGLITERAL an index
+// into the table of texts.  The arrays double in size when full, so
+// adding a token allocates nothing most of the time, and reading tokens
+// never does.  A text can also be kept as just the offset and length of
+// a slice of the scanner's retained input (see Yylex.retained), or of
+// the buffer's own characters, into which copyText copies it; its
+// TextSlice is made when the text is read.  Copied texts are overwritten
+// once the buffer is cleared and refilled, so a text to be kept longer
+// must be turned into a String.
+
+class TokenBuffer {
+	private static final int INITIAL_SIZE = 1024;
+
+	private byte[] kinds = new byte[INITIAL_SIZE];
+	private int[] lines = new int[INITIAL_SIZE];
+	private int[] columns = new int[INITIAL_SIZE];
+	private int[] values = new int[INITIAL_SIZE];
+	private int size;
+
+	private CharSequence[] texts = new CharSequence[INITIAL_SIZE];
+	// for null texts, made by the first slice: the start in source, or
+	// for a copied text -1 - its start in chars
+	private int[] sliceStarts;
+	private int[] sliceLengths;
+	private int textCount;
+
+	// the characters of copied texts
+	private char[] chars;
+	private int charCount;
+
+	// the input slices are taken from
+	private char[] source;
+
+	private IdTable ids;
+
+	// number of tokens
+	int size() {
+		return size;
+	}
+
+	int kind(int i) {
+		return kinds[i];
+	}
+
+	int line(int i) {
+		return lines[i];
+	}
+
+	int column(int i) {
+		return columns[i];
+	}
+
+	// value of an INTLITERAL token
+	int intValue(int i) {
+		return values[i];
+	}
+
+	// id of an ID token
+	int id(int i) {
+		return values[i];
+	}
+
+	// text of an ID or STRINGLITERAL token; a String, or a TextSlice if
+	// the scanner retains its input
+	CharSequence text(int i) {
+		if (kinds[i] == sym.ID)
+			return ids.name(values[i]);
+		int t = values[i];
+		if (texts[t] == null) {
+			int start = sliceStarts[t];
+			if (start < 0)
+				return new TextSlice(chars, -1 - start, sliceLengths[t]);
+			return new TextSlice(source, start, sliceLengths[t]);
+		}
+		return texts[t];
+	}
+
+	// the table the ids of ID tokens refer to
+	IdTable ids() {
+		return ids;
+	}
+
+	void setIds(IdTable ids) {
+		this.ids = ids;
+	}
+
+	void setSource(char[] source) {
+		this.source = source;
+	}
+
+	// Forgets all tokens, keeping the arrays for reuse.
+	void clear() {
+		Arrays.fill(texts, 0, textCount, null);
+		size = 0;
+		textCount = 0;
+		charCount = 0;
+	}
+
+	void add(int kind, int line, int column, int value) {
+		if (size == kinds.length) {
+			int n = size * 2;
+			kinds = Arrays.copyOf(kinds, n);
+			lines = Arrays.copyOf(lines, n);
+			columns = Arrays.copyOf(columns, n);
+			values = Arrays.copyOf(values, n);
+		}
+		kinds[size] = (byte) kind;
+		lines[size] = line;
+		columns[size] = column;
+		values[size] = value;
+		size++;
+	}
+
+	// Replaces the tokens by the first size of the given arrays, which the
+	// buffer keeps (TokenCache reads them back this way).  The texts the
+	// values of STRINGLITERAL tokens refer to are added after.
+	void setTokens(byte[] kinds, int[] lines, int[] columns, int[] values, int size) {
+		clear();
+		if (kinds.length > 0) {
+			this.kinds = kinds;
+			this.lines = lines;
+			this.columns = columns;
+			this.values = values;
+		}
+		this.size = size;
+	}
+
+	// Moves tokens from .. to-1 by lines lines and columns columns.
+	void move(int from, int to, int lines, int columns) {
+		for (int i = from; i < to; i++) {
+			this.lines[i] += lines;
+			this.columns[i] += columns;
+		}
+	}
+
+	void setColumn(int i, int column) {
+		columns[i] = column;
+	}
+
+	// Replaces the text of STRINGLITERAL token i.
+	void setText(int i, CharSequence text) {
+		texts[values[i]] = text;
+	}
+
+	// Stores a token text and returns its index, the value to add with it.
+	int addText(CharSequence text) {
+		growTexts();
+		texts[textCount] = text;
+		return textCount++;
+	}
+
+	// Stores a text that is the slice of the source of the given length
+	// at start, and returns its index.
+	int addSlice(int start, int length) {
+		return slice(start, length);
+	}
+
+	// Stores a copy of text in the buffer's characters and returns its
+	// index; no String is made for it.
+	int copyText(StringBuilder text) {
+		int length = text.length();
+		if (chars == null)
+			chars = new char[INITIAL_SIZE * 16];
+		if (charCount + length > chars.length)
+			chars = Arrays.copyOf(chars, Math.max(charCount + length, chars.length * 2));
+		text.getChars(0, length, chars, charCount);
+		charCount += length;
+		return slice(-1 - (charCount - length), length);
+	}
+
+	private int slice(int start, int length) {
+		growTexts();
+		if (sliceStarts == null) {
+			sliceStarts = new int[texts.length];
+			sliceLengths = new int[texts.length];
+		}
+		sliceStarts[textCount] = start;
+		sliceLengths[textCount] = length;
+		return textCount++;
+	}
+
+	private void growTexts() {
+		if (textCount == texts.length) {
+			int n = textCount * 2;
+			texts = Arrays.copyOf(texts, n);
+			if (sliceStarts != null) {
+				sliceStarts = Arrays.copyOf(sliceStarts, n);
+				sliceLengths = Arrays.copyOf(sliceLengths, n);
+			}
+		}
+	}
+}
@@ -0,0 +1,368 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// TokenCache
+//
+// A directory of scanned files, so a file that was scanned before is not
+// scanned again.  An entry is keyed by the SHA-256 of a fingerprint of
+// the scanner and the bytes of the file; it holds the tokens and the
+// diagnostics of the file, which P2 replays in place of scanning.  The
+// diagnostics are kept as reported, so they are printed as the options
+// of the replaying run say (-json, -coalesce, -maxdiags).
+//
+// The fingerprint hashes the classes that decide what the tokens are:
+// Yylex, generated from simple.jlex, sym, Keywords and LineMap, as they
+// are found on the class path.  Any change of the scanner therefore
+// misses the old entries, which are left to eviction.  The key also
+// hashes the charset the file is decoded with.
+//
+// Several processes may share a cache.  An entry is written to a
+// temporary file and renamed into place, so it is either complete or
+// absent; an entry that cannot be read for any reason counts as a miss.
+// Each hit sets the entry's modification time, and when the entries
+// grow past the size limit, the least recently used ones are deleted
+// until they take 90% of it.  Failing to store an entry is reported
+// once and otherwise ignored.
+//
+// Entry format (DataOutputStream), with the token fields in arrays of
+// their own so they are read back in bulk:
+//     int MAGIC, int name count, the names (see writeText), int token
+//     count, the kinds (bytes), the lines, the columns, the values (ints:
+//     for INTLITERAL the value, for ID the name index, for STRINGLITERAL
+//     the index of the text), int text count, the texts in token order;
+//     int message count, the messages, int diagnostic count and per
+//     diagnostic: boolean error, int line, int column, int message index,
+//     detail (possibly null).
+
+class TokenCache {
+	private static final int MAGIC = 0x53544333;   // "STC3"
+
+	private static final String SUFFIX = ".tok";
+
+	// temporary files older than this are left over from a failed store
+	private static final long STALE_MILLIS = 3600 * 1000;
+
+	// the caches opened by this process, by directory
+	private static final Map<Path, TokenCache> CACHES = new HashMap<Path, TokenCache>();
+
+	private final Path dir;
+	private final long maxBytes;
+	private final byte[] fingerprint;
+
+	// bytes in the entries, as far as this process knows, or -1
+	private long size = -1;
+	private boolean warned;
+
+	private TokenCache(Path dir, long maxBytes) throws IOException {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.fingerprint = fingerprint();
+		Files.createDirectories(dir);
+	}
+
+	// Returns the cache in dir, which holds at most maxBytes of entries.
+	static synchronized TokenCache get(Path dir, long maxBytes) throws IOException {
+		dir = dir.toAbsolutePath().normalize();
+		TokenCache cache = CACHES.get(dir);
+		if (cache == null) {
+			cache = new TokenCache(dir, maxBytes);
+			CACHES.put(dir, cache);
+		}
+		return cache;
+	}
+
+	// Returns the key of the entry of a file with the given contents,
+	// decoded with charset.
+	String key(byte[] content, Charset charset) {
+		MessageDigest digest = sha256();
+		digest.update(fingerprint);
+		digest.update(charset.name().getBytes());
+		digest.update(content);
+		StringBuilder s = new StringBuilder();
+		for (byte b : digest.digest())
+			s.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return s.toString();
+	}
+
+	// Returns the entry for key, or null if there is none.
+	Entry load(String key) {
+		Path path = dir.resolve(key + SUFFIX);
+		try {
+			byte[] bytes = Files.readAllBytes(path);
+			Entry entry = Entry.read(ByteBuffer.wrap(bytes));
+			try {
+				Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+			} catch (IOException ex) {
+				// evicted meanwhile, or not ours to touch; the entry is still good
+			}
+			return entry;
+		} catch (IOException | RuntimeException ex) {
+			// missing, or not an entry (e.g. of an older format)
+			return null;
+		}
+	}
+
+	// Stores entry under key.  Failures are reported to err once.
+	synchronized void store(String key, Entry entry, PrintStream err) {
+		Path tmp = null;
+		try {
+			tmp = Files.createTempFile(dir, key, ".tmp");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+				entry.write(out);
+			}
+			long bytes = Files.size(tmp);
+			Files.move(tmp, dir.resolve(key + SUFFIX), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			tmp = null;
+			if (size < 0 || size + bytes > maxBytes)
+				evict();
+			else
+				size += bytes;
+		} catch (IOException ex) {
+			if (!warned)
+				err.println("token cache: could not store an entry in " + dir + ": " + ex);
+			warned = true;
+		} finally {
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException ex) {
+					// left for a later eviction
+				}
+			}
+		}
+	}
+
+	// Deletes the least recently used entries until the rest take at most
+	// 90% of maxBytes, and any stale temporary files.
+	private void evict() throws IOException {
+		List<Path> entries = new ArrayList<Path>();
+		List<Long> times = new ArrayList<Long>();
+		List<Long> sizes = new ArrayList<Long>();
+		long total = 0;
+		long now = System.currentTimeMillis();
+		try (Stream<Path> list = Files.list(dir)) {
+			for (Path p : (Iterable<Path>) list::iterator) {
+				try {
+					long modified = Files.getLastModifiedTime(p).toMillis();
+					String name = p.getFileName().toString();
+					if (name.endsWith(".tmp") && now - modified > STALE_MILLIS) {
+						Files.deleteIfExists(p);
+					} else if (name.endsWith(SUFFIX)) {
+						long bytes = Files.size(p);
+						entries.add(p);
+						times.add(modified);
+						sizes.add(bytes);
+						total += bytes;
+					}
+				} catch (NoSuchFileException ex) {
+					// deleted by another process
+				}
+			}
+		}
+		if (total > maxBytes) {
+			Integer[] order = new Integer[entries.size()];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> Long.compare(times.get(a), times.get(b)));
+			for (int i : order) {
+				if (total <= maxBytes * 9 / 10)
+					break;
+				Files.deleteIfExists(entries.get(i));
+				total -= sizes.get(i);
+			}
+		}
+		size = total;
+	}
+
+	private static byte[] fingerprint() throws IOException {
+		MessageDigest digest = sha256();
+		digest.update(Integer.toString(MAGIC).getBytes());
+		for (String name : new String[] { "Yylex", "sym", "Keywords", "LineMap" }) {
+			try (InputStream in = TokenCache.class.getResourceAsStream(name + ".class")) {
+				if (in == null)
+					throw new IOException("cannot find " + name + ".class to fingerprint the scanner");
+				digest.update(name.getBytes());
+				digest.update(in.readAllBytes());
+			}
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new AssertionError(ex);   // every JDK has SHA-256
+		}
+	}
+
+	// The tokens and diagnostics of one file.  While the file is scanned,
+	// it is the listener of the scanner's Diagnostics.
+	static class Entry implements Diagnostics.Listener {
+		final TokenBuffer tokens = new TokenBuffer();
+		private final List<Report> diagnostics = new ArrayList<Report>();
+
+		// a diagnostic, as reported
+		private static class Report {
+			boolean error;
+			int line;
+			int column;
+			String message;
+			String detail;
+		}
+
+		public void report(boolean error, int line, int column, String message, char[] chars, int start, int len) {
+			Report r = new Report();
+			r.error = error;
+			r.line = line;
+			r.column = column;
+			r.message = message;
+			r.detail = chars == null ? null : new String(chars, start, len);
+			diagnostics.add(r);
+		}
+
+		// Reports the diagnostics again, to d.
+		void replay(Diagnostics d) {
+			for (Report r : diagnostics) {
+				char[] chars = r.detail == null ? null : r.detail.toCharArray();
+				d.report(r.error, r.line, r.column, r.message, chars, 0, chars == null ? 0 : chars.length);
+			}
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			IdTable ids = tokens.ids();
+			int names = ids == null ? 0 : ids.size();
+			int count = tokens.size();
+			out.writeInt(MAGIC);
+			out.writeInt(names);
+			for (int id = 0; id < names; id++)
+				writeText(out, ids.name(id));
+			out.writeInt(count);
+			for (int i = 0; i < count; i++)
+				out.writeByte(tokens.kind(i));
+			for (int i = 0; i < count; i++)
+				out.writeInt(tokens.line(i));
+			for (int i = 0; i < count; i++)
+				out.writeInt(tokens.column(i));
+			// the texts are numbered in the order of their tokens
+			int texts = 0;
+			for (int i = 0; i < count; i++)
+				out.writeInt(tokens.kind(i) == sym.STRINGLITERAL ? texts++ : tokens.intValue(i));
+			out.writeInt(texts);
+			for (int i = 0; i < count; i++) {
+				if (tokens.kind(i) == sym.STRINGLITERAL)
+					writeText(out, tokens.text(i));
+			}
+			// a file has few distinct messages, but may have many diagnostics
+			Map<String, Integer> messages = new LinkedHashMap<String, Integer>();
+			for (Report r : diagnostics)
+				messages.putIfAbsent(r.message, messages.size());
+			out.writeInt(messages.size());
+			for (String message : messages.keySet())
+				writeText(out, message);
+			out.writeInt(diagnostics.size());
+			for (Report r : diagnostics) {
+				out.writeBoolean(r.error);
+				out.writeInt(r.line);
+				out.writeInt(r.column);
+				out.writeInt(messages.get(r.message));
+				writeText(out, r.detail);
+			}
+		}
+
+		// Reads an entry from in, which holds nothing else.  Reading past
+		// the end throws BufferUnderflowException.
+		static Entry read(ByteBuffer in) throws IOException {
+			if (in.getInt() != MAGIC)
+				throw new IOException("not a token cache entry");
+			Entry entry = new Entry();
+			IdTable ids = new IdTable();
+			for (int n = in.getInt(); n > 0; n--) {
+				char[] name = readText(in).toCharArray();
+				ids.intern(name, 0, name.length);
+			}
+			int count = in.getInt();
+			if (count < 0 || count > in.remaining() / 13)
+				throw new IOException("truncated token cache entry");
+			byte[] kinds = new byte[count];
+			int[] lines = new int[count];
+			int[] columns = new int[count];
+			int[] values = new int[count];
+			in.get(kinds);
+			readInts(in, lines);
+			readInts(in, columns);
+			readInts(in, values);
+			int texts = in.getInt();
+			for (int i = 0; i < count; i++) {
+				// a bad kind only gets reported as one by TokenWriter; a bad
+				// index would throw while the tokens are written
+				if (kinds[i] == sym.ID && (values[i] < 0 || values[i] >= ids.size())
+						|| kinds[i] == sym.STRINGLITERAL && (values[i] < 0 || values[i] >= texts))
+					throw new IOException("bad token in token cache entry");
+			}
+			entry.tokens.setIds(ids);
+			entry.tokens.setTokens(kinds, lines, columns, values, count);
+			for (int i = 0; i < texts; i++)
+				entry.tokens.addText(readText(in));
+			String[] messages = new String[in.getInt()];
+			for (int i = 0; i < messages.length; i++)
+				messages[i] = readText(in);
+			for (int n = in.getInt(); n > 0; n--) {
+				Report r = new Report();
+				r.error = in.get() != 0;
+				r.line = in.getInt();
+				r.column = in.getInt();
+				r.message = messages[in.getInt()];
+				r.detail = readText(in);
+				entry.diagnostics.add(r);
+			}
+			if (in.hasRemaining())
+				throw new IOException("trailing data in token cache entry");
+			return entry;
+		}
+
+		// Writes s (or null) as its length (-1 for null) and its chars;
+		// writeUTF is limited to 64 KB, and UTF-8 would not keep the lone
+		// surrogates an illegal character may be.
+		private static void writeText(DataOutputStream out, CharSequence s) throws IOException {
+			if (s == null) {
+				out.writeInt(-1);
+				return;
+			}
+			out.writeInt(s.length());
+			for (int i = 0; i < s.length(); i++)
+				out.writeChar(s.charAt(i));
+		}
+
+		private static void readInts(ByteBuffer in, int[] a) {
+			in.asIntBuffer().get(a);
+			in.position(in.position() + 4 * a.length);
+		}
+
+		private static String readText(ByteBuffer in) throws IOException {
+			int len = in.getInt();
+			if (len < 0)
+				return null;
+			if (len > in.remaining() / 2)
+				throw new IOException("truncated token cache entry");
+			char[] c = new char[len];
+			in.asCharBuffer().get(c);
+			in.position(in.position() + 2 * len);
+			return new String(c);
+		}
+	}
+}
@@ -0,0 +1,219 @@
+import java.io.*;
+import java.nio.charset.Charset;
+
+// TokenWriter
+//
+// Writes the token dump printed by P2 ("line:char NAME" or
+// "line:char NAME: value", one token per line).  Output is collected in
+// one reusable byte buffer and handed to the underlying stream in large
+// chunks.  Numbers and token names are copied into the buffer directly,
+// so writing a token allocates nothing; only a value containing
+// non-ASCII characters is encoded through the output charset.
+//
+// TokenWriter is itself an OutputStream, so other output (such as
+// System.out) can be routed through the same buffer and stays in order
+// with the tokens.  Like PrintStream, the methods never throw; I/O errors
+// are remembered and reported by checkError().
+
+class TokenWriter extends OutputStream {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// token names indexed by sym code, null for codes that are not printed
+	private static final byte[][] NAMES = new byte[64][];
+
+	static {
+		name(sym.AND, "AND");
+		name(sym.ASSIGN, "ASSIGN");
+		name(sym.BOOLEAN, "BOOL");
+		name(sym.CASE, "CASE");
+		name(sym.CLASS, "CLASS");
+		name(sym.COMMA, "COMMA");
+		name(sym.DEFAULT, "DEFAULT");
+		name(sym.DIVIDE, "DIVIDE");
+		name(sym.DO, "DO");
+		name(sym.ELSE, "ELSE");
+		name(sym.EOF, "EOF");
+		name(sym.EQUALS, "EQ");
+		name(sym.FALSE, "FALSE");
+		name(sym.GREATER, "GREATER");
+		name(sym.GREATEREQ, "GREATEREQ");
+		name(sym.ID, "IDENTIFIER: ");
+		name(sym.IF, "IF");
+		name(sym.INT, "INT");
+		name(sym.INTLITERAL, "INTLITERAL: ");
+		name(sym.LCURLY, "LCURLY");
+		name(sym.LESS, "LESS");
+		name(sym.LESSEQ, "LESSEQ");
+		name(sym.LPAREN, "LPAREN");
+		name(sym.MINUS, "MINUS");
+		name(sym.NOT, "NOT");
+		name(sym.NOTEQUALS, "NOTEQ");
+		name(sym.OR, "OR");
+		name(sym.PLUS, "PLUS");
+		name(sym.PRINT, "PRINT");
+		name(sym.PUBLIC, "PUBLIC");
+		name(sym.RCURLY, "RCURLY");
+		name(sym.RETURN, "RETURN");
+		name(sym.RPAREN, "RPAREN");
+		name(sym.SEMICOLON, "SEMIC");
+		name(sym.STATIC, "STATIC");
+		name(sym.STRING, "STRING");
+		name(sym.STRINGLITERAL, "STRINGLITERAL: ");
+		name(sym.SWITCH, "SWITCH");
+		name(sym.TIMES, "TIMES");
+		name(sym.TRUE, "TRUE");
+		name(sym.VOID, "VOID");
+		name(sym.WHILE, "WHILE");
+	}
+
+	private static void name(int kind, String name) {
+		NAMES[kind] = name.getBytes();
+	}
+
+	private final OutputStream out;
+	private final Charset charset;
+	private final byte[] newline;
+	private final byte[] buf = new byte[BUFFER_SIZE];
+	private int count;
+	private boolean error;
+
+	TokenWriter(OutputStream out) {
+		this(out, outputCharset());
+	}
+
+	TokenWriter(OutputStream out, Charset charset) {
+		this.out = out;
+		this.charset = charset;
+		this.newline = System.lineSeparator().getBytes(charset);
+	}
+
+	// the charset System.out encodes with
+	static Charset outputCharset() {
+		String enc = System.getProperty("stdout.encoding");
+		try {
+			return enc != null ? Charset.forName(enc) : Charset.defaultCharset();
+		} catch (IllegalArgumentException ex) {
+			return Charset.defaultCharset();
+		}
+	}
+
+	// Writes a token without a value.  Returns false if kind has no name;
+	// then only the position is written, without a line end.
+	boolean token(int line, int charnum, int kind) {
+		position(line, charnum);
+		if (kind < 0 || kind >= NAMES.length || NAMES[kind] == null)
+			return false;
+		bytes(NAMES[kind]);
+		bytes(newline);
+		return true;
+	}
+
+	void token(int line, int charnum, int kind, int value) {
+		position(line, charnum);
+		bytes(NAMES[kind]);
+		number(value);
+		bytes(newline);
+	}
+
+	void token(int line, int charnum, int kind, CharSequence value) {
+		position(line, charnum);
+		bytes(NAMES[kind]);
+		text(value);
+		bytes(newline);
+	}
+
+	public void write(int b) {
+		put((byte) b);
+	}
+
+	public void write(byte[] b, int off, int len) {
+		while (len > 0) {
+			if (count == BUFFER_SIZE)
+				drain();
+			int n = Math.min(len, BUFFER_SIZE - count);
+			System.arraycopy(b, off, buf, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	// Hands all buffered output to the underlying stream.
+	public void flush() {
+		drain();
+		try {
+			out.flush();
+		} catch (IOException ex) {
+			error = true;
+		}
+	}
+
+	// Flushes and reports whether writing ever failed.
+	boolean checkError() {
+		flush();
+		return error;
+	}
+
+	private void position(int line, int charnum) {
+		number(line);
+		put((byte) ':');
+		number(charnum);
+		put((byte) ' ');
+	}
+
+	private void number(int n) {
+		if (BUFFER_SIZE - count < 11)
+			drain();
+		if (n < 0) {
+			if (n == Integer.MIN_VALUE) {
+				bytes(String.valueOf(n).getBytes());
+				return;
+			}
+			buf[count++] = '-';
+			n = -n;
+		}
+		int digits = 1;
+		for (int t = n; t >= 10; t /= 10)
+			digits++;
+		int end = count + digits;
+		for (int i = end - 1; i >= count; i--) {
+			buf[i] = (byte) ('0' + n % 10);
+			n /= 10;
+		}
+		count = end;
+	}
+
+	private void text(CharSequence s) {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				// rare: let the charset deal with the rest of the value
+				bytes(s.subSequence(i, len).toString().getBytes(charset));
+				return;
+			}
+			put((byte) c);
+		}
+	}
+
+	private void bytes(byte[] b) {
+		write(b, 0, b.length);
+	}
+
+	private void put(byte b) {
+		if (count == BUFFER_SIZE)
+			drain();
+		buf[count++] = b;
+	}
+
+	private void drain() {
+		if (count == 0)
+			return;
+		try {
+			out.write(buf, 0, count);
+		} catch (IOException ex) {
+			error = true;
+		}
+		count = 0;
+	}
+}
@@ -0,0 +1,141 @@
+package bench;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.openjdk.jmh.annotations.*;
+
+// ScanBenchmark
+//
+// JMH benchmarks of the scanner and of P2 (make bench).  Each benchmark
+// scans one whole file in one of the ways of ScanBench, which also says
+// why they are reached by reflection.  The file is generated for each
+// input profile, or given with -p file=...
+//
+// The scanning benchmarks report files/s, and as counters tokens/s and
+// megabytes/s; p2 reports the time of one P2 run on the file, from
+// options to formatted output, without JVM start-up.  -prof gc adds the
+// allocation rate and bytes allocated per file (gc.alloc.rate.norm),
+// which divided by the token count gives bytes per token.  Every
+// benchmark runs in JVMs forked for it, so the JIT profile of one way
+// does not shape the next.
+//
+// Options, given as -p name=value:
+//   profile  ident, literal, comment, string or whitespace
+//   size     megabytes generated per profile (default 8)
+//   file     a file to scan instead of a generated one
+//   latency  microseconds each 8 KB read of the file waits (default 0)
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ScanBenchmark {
+	@Param({ "ident", "literal", "comment", "string", "whitespace" })
+	public String profile;
+
+	@Param("8")
+	public int size;
+
+	@Param("")
+	public String file;
+
+	@Param("0")
+	public long latency;
+
+	// tokens and megabytes scanned, which JMH reports per second
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Scanned {
+		public long tokens;
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void clear() {
+			tokens = 0;
+			megabytes = 0;
+		}
+	}
+
+	private String input;
+	private File generated;
+	private double megabytes;
+	private ToLongFunction<String> reader, ahead, mmap, bulk, slices, p2;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Class<?> scanBench = Class.forName("ScanBench");
+		if (file.isEmpty()) {
+			generated = File.createTempFile("bench-" + profile, ".sim");
+			Method generate = scanBench.getDeclaredMethod("generate", String.class, int.class, File.class);
+			generate.setAccessible(true);
+			generate.invoke(null, profile, size << 20, generated);
+			input = generated.getPath();
+		} else {
+			input = file;
+		}
+		megabytes = new File(input).length() / (1024.0 * 1024.0);
+
+		Method way = scanBench.getDeclaredMethod("way", String.class, long.class);
+		way.setAccessible(true);
+		reader = way(way, "reader");
+		ahead = way(way, "ahead");
+		mmap = way(way, "mmap");
+		bulk = way(way, "bulk");
+		slices = way(way, "slices");
+		p2 = way(way, "p2");
+	}
+
+	@SuppressWarnings("unchecked")
+	private ToLongFunction<String> way(Method way, String name) throws Exception {
+		return (ToLongFunction<String>) way.invoke(null, name, latency);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (generated != null)
+			generated.delete();
+	}
+
+	private long scan(ToLongFunction<String> way, Scanned scanned) {
+		long count = way.applyAsLong(input);
+		scanned.tokens += count;
+		scanned.megabytes += megabytes;
+		return count;
+	}
+
+	@Benchmark
+	public long reader(Scanned scanned) {
+		return scan(reader, scanned);
+	}
+
+	@Benchmark
+	public long ahead(Scanned scanned) {
+		return scan(ahead, scanned);
+	}
+
+	@Benchmark
+	public long mmap(Scanned scanned) {
+		return scan(mmap, scanned);
+	}
+
+	@Benchmark
+	public long bulk(Scanned scanned) {
+		return scan(bulk, scanned);
+	}
+
+	@Benchmark
+	public long slices(Scanned scanned) {
+		return scan(slices, scanned);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long p2() {
+		return p2.applyAsLong(input);
+	}
+}
@@ -9,6 +9,8 @@ import java_cup.runtime.*; // defines the Symbol class
 // A TokenVal object contains the line number on which the token occurs as
 // well as the number of the character on that line that starts the token.
 // Some tokens (e.g., literals) also include the value of the token.
+// The text of an identifier or string literal is a String, or a TextSlice
+// of the input if the scanner retains it (see retained()).
 
 class TokenVal {
     int linenum;
@@ -20,14 +22,6 @@ class TokenVal {
     }
 }
 
-class CharNum {
-  static int num=1;
-}
-
-class StringHelper {
-	static StringBuilder sb = new StringBuilder();
-}
-
 class IntLitTokenVal extends TokenVal {
     int intVal;
 
@@ -38,19 +32,23 @@ class IntLitTokenVal extends TokenVal {
 }
 
 class StringLitTokenVal extends TokenVal {
-	String stringVal;
+	CharSequence stringVal;
 
-	StringLitTokenVal(int l, int c, String val) {
+	StringLitTokenVal(int l, int c, CharSequence val) {
 		super(l, c);
 		stringVal = val;
 	}
 }
 
+// An identifier carries its id in the scanner's IdTable as well as its
+// name; tokens for the same name share one name object.
 class IdTokenVal extends TokenVal {
-	String val;
+	int id;
+	CharSequence val;
 
-	IdTokenVal(int l, int c, String val) {
+	IdTokenVal(int l, int c, int id, CharSequence val) {
 		super(l, c);
+		this.id = id;
 		this.val = val;
 	}
 }
@@ -89,18 +87,25 @@ class Yylex implements java_cup.runtime.Scanner {
    * Translates characters to character classes
    */
   private static final String ZZ_CMAP_PACKED = 
-    "\11\0\1\60\1\4\1\10\1\10\1\7\22\0\1\2\1\51\1\5"+
-    "\3\0\1\52\1\0\1\42\1\43\1\11\1\47\1\44\1\50\1\0"+
-    "\1\6\12\1\1\0\1\46\1\53\1\45\1\54\2\0\22\55\1\12"+
-    "\7\55\1\0\1\57\2\0\1\56\1\0\1\31\1\30\1\32\1\33"+
-    "\1\22\1\34\1\17\1\37\1\15\2\55\1\27\1\23\1\16\1\24"+
-    "\1\26\1\55\1\14\1\21\1\13\1\25\1\35\1\36\1\55\1\20"+
-    "\1\55\1\40\1\3\1\41\7\0\1\10\u1fa2\0\1\10\1\10\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\udfe6\0";
+    "\11\0\1\47\1\4\1\10\1\10\1\7\22\0\1\2\1\40\1\5"+
+    "\3\0\1\41\1\0\1\31\1\32\1\11\1\36\1\33\1\37\1\0"+
+    "\1\6\12\1\1\0\1\35\1\42\1\34\1\43\2\0\22\44\1\12"+
+    "\7\44\1\0\1\46\2\0\1\45\1\0\4\44\1\16\3\44\1\24"+
+    "\2\44\1\26\1\17\1\25\1\20\1\22\1\44\1\23\1\14\1\15"+
+    "\1\21\3\44\1\13\1\44\1\27\1\3\1\30\7\0\1\10\u1fa2\0"+
+    "\1\10\1\10\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\udfe6\0";
 
   /** 
-   * Translates characters to character classes
+   * Translates blocks of 256 characters to their entries in
+   * ZZ_CMAP_BLOCKS (two-level character map, see CompactCMap)
+   */
+  private static final char [] ZZ_CMAP_TOP = new char[0x1100];
+
+  /** 
+   * Translates characters to character classes, one block of 256
+   * characters after the other
    */
-  private static final char [] ZZ_CMAP = zzUnpackCMap(ZZ_CMAP_PACKED);
+  private static final char [] ZZ_CMAP_BLOCKS = zzUnpackCMap(ZZ_CMAP_PACKED, ZZ_CMAP_TOP);
 
   /** 
    * Translates DFA states to action switch labels.
@@ -110,19 +115,16 @@ class Yylex implements java_cup.runtime.Scanner {
   private static final String ZZ_ACTION_PACKED_0 =
     "\4\0\1\1\1\2\1\3\1\4\1\1\1\5\2\6"+
     "\1\7\1\10\1\11\1\12\1\13\1\14\1\12\1\15"+
-    "\16\16\1\17\1\20\1\21\1\22\1\23\1\24\1\25"+
+    "\2\16\1\17\1\20\1\21\1\22\1\23\1\24\1\25"+
     "\1\26\1\27\1\30\1\7\1\31\1\32\1\33\1\34"+
-    "\1\35\1\12\1\36\5\16\1\37\10\16\1\40\3\16"+
-    "\1\41\1\42\1\43\1\44\1\45\4\16\1\46\15\16"+
-    "\1\47\3\16\1\50\3\16\1\51\2\16\1\52\10\16"+
-    "\1\53\1\16\1\54\1\55\1\56\1\16\1\57\1\60"+
-    "\1\61\1\62\2\16\1\0\1\16\1\63\1\64\1\0"+
-    "\1\16\1\0\1\16\1\0\1\16\1\0\1\16\1\0"+
-    "\1\16\1\0\1\16\1\0\1\16\1\0\1\16\1\0"+
-    "\1\16\1\0\1\16\2\65";
+    "\1\35\1\36\1\37\1\16\1\40\1\41\1\42\1\43"+
+    "\1\44\4\16\1\0\1\16\1\0\1\16\1\0\1\16"+
+    "\1\0\1\16\1\0\1\16\1\0\1\16\1\0\1\16"+
+    "\1\0\1\16\1\0\1\16\1\0\1\16\1\0\1\16"+
+    "\2\45";
 
   private static int [] zzUnpackAction() {
-    int [] result = new int[151];
+    int [] result = new int[74];
     int offset = 0;
     offset = zzUnpackAction(ZZ_ACTION_PACKED_0, offset, result);
     return result;
@@ -147,28 +149,19 @@ class Yylex implements java_cup.runtime.Scanner {
   private static final int [] ZZ_ROWMAP = zzUnpackRowMap();
 
   private static final String ZZ_ROWMAP_PACKED_0 =
-    "\0\0\0\61\0\142\0\223\0\0\0\0\0\0\0\0"+
-    "\0\304\0\0\0\0\0\365\0\0\0\u0126\0\u0157\0\u0188"+
-    "\0\0\0\u01b9\0\0\0\0\0\u01ea\0\u021b\0\u024c\0\u027d"+
-    "\0\u02ae\0\u02df\0\u0310\0\u0341\0\u0372\0\u03a3\0\u03d4\0\u0405"+
-    "\0\u0436\0\u0467\0\0\0\0\0\0\0\0\0\0\0\u0498"+
-    "\0\0\0\0\0\0\0\u04c9\0\u04fa\0\u052b\0\u055c\0\0"+
-    "\0\0\0\0\0\u058d\0\0\0\u05be\0\u05ef\0\u0620\0\u0651"+
-    "\0\u0682\0\u02ae\0\u06b3\0\u06e4\0\u0715\0\u0746\0\u0777\0\u07a8"+
-    "\0\u07d9\0\u080a\0\u02ae\0\u083b\0\u086c\0\u089d\0\0\0\0"+
-    "\0\0\0\0\0\0\0\u08ce\0\u08ff\0\u0930\0\u0961\0\u02ae"+
-    "\0\u0992\0\u09c3\0\u09f4\0\u0a25\0\u0a56\0\u0a87\0\u0ab8\0\u0ae9"+
-    "\0\u0b1a\0\u0b4b\0\u0b7c\0\u0bad\0\u0bde\0\u02ae\0\u0c0f\0\u0c40"+
-    "\0\u0c71\0\u02ae\0\u0ca2\0\u0cd3\0\u0d04\0\u02ae\0\u0d35\0\u0d66"+
-    "\0\u02ae\0\u0d97\0\u0dc8\0\u0df9\0\u0e2a\0\u0e5b\0\u0e8c\0\u0ebd"+
-    "\0\u0eee\0\u02ae\0\u0f1f\0\u02ae\0\u02ae\0\u02ae\0\u0f50\0\u02ae"+
-    "\0\u02ae\0\u02ae\0\u02ae\0\u0f81\0\u0fb2\0\u0fe3\0\u1014\0\u02ae"+
-    "\0\u02ae\0\u1045\0\u1076\0\u10a7\0\u10d8\0\u1109\0\u113a\0\u116b"+
-    "\0\u119c\0\u11cd\0\u11fe\0\u122f\0\u1260\0\u1291\0\u12c2\0\u12f3"+
-    "\0\u1324\0\u1355\0\u1386\0\u13b7\0\u13e8\0\0\0\u02ae";
+    "\0\0\0\50\0\120\0\170\0\0\0\0\0\0\0\0"+
+    "\0\240\0\0\0\0\0\310\0\0\0\360\0\0\0\u0118"+
+    "\0\0\0\u0140\0\0\0\0\0\u0168\0\u0190\0\0\0\0"+
+    "\0\0\0\0\0\0\0\u01b8\0\0\0\0\0\0\0\u01e0"+
+    "\0\u0208\0\u0230\0\u0258\0\0\0\0\0\0\0\u0280\0\0"+
+    "\0\u02a8\0\0\0\0\0\0\0\0\0\0\0\u02d0\0\u02f8"+
+    "\0\u0320\0\u0348\0\u0370\0\u0398\0\u03c0\0\u03e8\0\u0410\0\u0438"+
+    "\0\u0460\0\u0488\0\u04b0\0\u04d8\0\u0500\0\u0528\0\u0550\0\u0578"+
+    "\0\u05a0\0\u05c8\0\u05f0\0\u0618\0\u0640\0\u0668\0\u0690\0\u06b8"+
+    "\0\0\0\u0190";
 
   private static int [] zzUnpackRowMap() {
-    int [] result = new int[151];
+    int [] result = new int[74];
     int offset = 0;
     offset = zzUnpackRowMap(ZZ_ROWMAP_PACKED_0, offset, result);
     return result;
@@ -191,104 +184,41 @@ class Yylex implements java_cup.runtime.Scanner {
   private static final int [] ZZ_TRANS = zzUnpackTrans();
 
   private static final String ZZ_TRANS_PACKED_0 =
-    "\61\0\4\5\1\6\1\7\1\5\1\10\1\0\46\5"+
-    "\1\11\1\12\10\13\1\0\1\14\47\13\1\15\1\16"+
+    "\50\0\4\5\1\6\1\7\1\5\1\10\1\0\35\5"+
+    "\1\11\1\12\10\13\1\0\1\14\36\13\1\15\1\16"+
     "\1\17\1\20\1\17\1\21\1\22\1\23\1\0\1\24"+
-    "\1\25\1\26\1\27\1\30\3\31\1\32\1\33\3\31"+
-    "\1\34\1\31\1\35\1\31\1\36\1\37\1\40\1\41"+
-    "\1\42\1\31\1\43\1\44\1\45\1\46\1\47\1\50"+
-    "\1\51\1\52\1\53\1\54\1\55\1\56\1\57\1\31"+
-    "\2\15\1\17\5\0\1\60\5\0\1\12\1\10\1\0"+
-    "\1\6\50\0\1\61\53\0\1\16\61\0\1\17\1\0"+
-    "\1\17\53\0\1\17\3\0\1\62\63\0\1\63\2\0"+
-    "\1\64\50\0\1\31\10\0\1\31\1\65\4\31\1\66"+
-    "\17\31\15\0\2\31\3\0\1\31\10\0\2\31\1\67"+
-    "\23\31\15\0\2\31\3\0\1\31\10\0\10\31\1\70"+
-    "\15\31\15\0\2\31\3\0\1\31\10\0\4\31\1\71"+
-    "\15\31\1\72\3\31\15\0\2\31\3\0\1\31\10\0"+
-    "\26\31\15\0\2\31\3\0\1\31\10\0\1\31\1\73"+
-    "\22\31\1\74\1\31\15\0\2\31\3\0\1\31\10\0"+
-    "\15\31\1\75\10\31\15\0\2\31\3\0\1\31\10\0"+
-    "\13\31\1\76\12\31\15\0\2\31\3\0\1\31\10\0"+
-    "\12\31\1\77\13\31\15\0\2\31\3\0\1\31\10\0"+
-    "\15\31\1\100\1\31\1\101\6\31\15\0\2\31\3\0"+
-    "\1\31\10\0\10\31\1\102\1\31\1\103\13\31\15\0"+
-    "\2\31\3\0\1\31\10\0\17\31\1\104\6\31\15\0"+
-    "\2\31\3\0\1\31\10\0\12\31\1\105\13\31\15\0"+
-    "\2\31\3\0\1\31\10\0\25\31\1\106\15\0\2\31"+
-    "\47\0\1\107\60\0\1\110\65\0\1\111\53\0\1\112"+
-    "\60\0\1\113\13\0\4\63\1\0\2\63\2\0\50\63"+
-    "\1\0\1\31\10\0\2\31\1\114\23\31\15\0\2\31"+
-    "\3\0\1\31\10\0\7\31\1\115\16\31\15\0\2\31"+
-    "\3\0\1\31\10\0\13\31\1\116\12\31\15\0\2\31"+
-    "\3\0\1\31\10\0\1\31\1\117\24\31\15\0\2\31"+
-    "\3\0\1\31\10\0\1\31\1\120\24\31\15\0\2\31"+
-    "\3\0\1\31\10\0\17\31\1\121\6\31\15\0\2\31"+
-    "\3\0\1\31\10\0\3\31\1\122\22\31\15\0\2\31"+
-    "\3\0\1\31\10\0\7\31\1\123\16\31\15\0\2\31"+
-    "\3\0\1\31\10\0\16\31\1\124\7\31\15\0\2\31"+
-    "\3\0\1\31\10\0\12\31\1\125\13\31\15\0\2\31"+
-    "\3\0\1\31\10\0\17\31\1\126\6\31\15\0\2\31"+
-    "\3\0\1\31\10\0\7\31\1\127\16\31\15\0\2\31"+
-    "\3\0\1\31\10\0\22\31\1\130\3\31\15\0\2\31"+
-    "\3\0\1\31\10\0\15\31\1\131\10\31\15\0\2\31"+
-    "\3\0\1\31\10\0\3\31\1\132\22\31\15\0\2\31"+
-    "\3\0\1\31\10\0\3\31\1\133\22\31\15\0\2\31"+
-    "\3\0\1\31\10\0\3\31\1\134\22\31\15\0\2\31"+
-    "\3\0\1\31\10\0\1\31\1\135\24\31\15\0\2\31"+
-    "\3\0\1\31\10\0\10\31\1\136\15\31\15\0\2\31"+
-    "\3\0\1\31\10\0\13\31\1\137\12\31\15\0\2\31"+
-    "\3\0\1\31\10\0\1\31\1\140\24\31\15\0\2\31"+
-    "\3\0\1\31\10\0\1\31\1\141\24\31\15\0\2\31"+
-    "\3\0\1\31\10\0\10\31\1\142\15\31\15\0\2\31"+
-    "\3\0\1\31\10\0\15\31\1\143\10\31\15\0\2\31"+
-    "\3\0\1\31\10\0\15\31\1\144\10\31\15\0\2\31"+
-    "\3\0\1\31\10\0\7\31\1\145\16\31\15\0\2\31"+
-    "\3\0\1\31\10\0\10\31\1\146\15\31\15\0\2\31"+
-    "\3\0\1\31\10\0\17\31\1\147\6\31\15\0\2\31"+
-    "\3\0\1\31\10\0\7\31\1\150\16\31\15\0\2\31"+
-    "\3\0\1\31\10\0\21\31\1\151\4\31\15\0\2\31"+
-    "\3\0\1\31\10\0\15\31\1\152\10\31\15\0\2\31"+
-    "\3\0\1\31\10\0\4\31\1\153\21\31\15\0\2\31"+
-    "\3\0\1\31\10\0\10\31\1\154\15\31\15\0\2\31"+
-    "\3\0\1\31\10\0\2\31\1\155\23\31\15\0\2\31"+
-    "\3\0\1\31\10\0\3\31\1\156\22\31\15\0\2\31"+
-    "\3\0\1\31\10\0\20\31\1\157\5\31\15\0\2\31"+
-    "\3\0\1\31\10\0\3\31\1\160\22\31\15\0\2\31"+
-    "\3\0\1\31\10\0\10\31\1\161\15\31\15\0\2\31"+
-    "\3\0\1\31\10\0\7\31\1\162\16\31\15\0\2\31"+
-    "\3\0\1\31\10\0\13\31\1\163\12\31\15\0\2\31"+
-    "\3\0\1\31\10\0\10\31\1\164\15\31\15\0\2\31"+
-    "\3\0\1\31\10\0\10\31\1\165\15\31\15\0\2\31"+
-    "\3\0\1\31\10\0\5\31\1\166\20\31\15\0\2\31"+
-    "\3\0\1\31\10\0\11\31\1\167\14\31\15\0\2\31"+
-    "\3\0\1\31\10\0\4\31\1\170\21\31\15\0\2\31"+
-    "\3\0\1\31\10\0\20\31\1\171\5\31\15\0\2\31"+
-    "\3\0\1\31\10\0\25\31\1\172\15\0\2\31\3\0"+
-    "\1\31\10\0\20\31\1\173\5\31\15\0\2\31\3\0"+
-    "\1\31\10\0\17\31\1\174\6\31\15\0\2\31\3\0"+
-    "\1\31\10\0\15\31\1\175\10\31\15\0\2\31\2\0"+
-    "\1\176\1\177\2\176\1\0\2\176\2\0\1\176\26\177"+
-    "\15\176\2\177\2\176\1\0\1\31\10\0\4\31\1\200"+
-    "\21\31\15\0\2\31\3\0\1\31\10\0\1\31\1\201"+
-    "\24\31\15\0\2\31\26\0\1\202\35\0\1\31\10\0"+
-    "\12\31\1\203\13\31\15\0\2\31\27\0\1\204\34\0"+
-    "\1\31\10\0\13\31\1\205\12\31\15\0\2\31\15\0"+
-    "\1\206\46\0\1\31\10\0\1\31\1\207\24\31\15\0"+
-    "\2\31\2\0\4\210\1\0\2\210\2\0\51\210\1\211"+
-    "\2\210\1\0\2\210\2\0\1\210\26\211\15\210\2\211"+
-    "\2\210\26\0\1\212\33\0\1\31\10\0\14\31\1\213"+
-    "\11\31\15\0\2\31\16\0\1\214\45\0\1\31\10\0"+
-    "\2\31\1\215\23\31\15\0\2\31\17\0\1\216\44\0"+
-    "\1\31\10\0\3\31\1\217\22\31\15\0\2\31\20\0"+
-    "\1\220\43\0\1\31\10\0\4\31\1\221\21\31\15\0"+
-    "\2\31\15\0\1\222\46\0\1\31\10\0\1\31\1\223"+
-    "\24\31\15\0\2\31\31\0\1\224\32\0\1\31\10\0"+
-    "\15\31\1\225\10\31\15\0\2\31\20\0\1\226\43\0"+
-    "\1\31\10\0\4\31\1\227\21\31\15\0\2\31\2\0";
+    "\1\25\14\26\1\27\1\30\1\31\1\32\1\33\1\34"+
+    "\1\35\1\36\1\37\1\40\1\41\1\42\1\43\1\26"+
+    "\2\15\1\17\5\0\1\44\7\0\1\12\5\0\1\10"+
+    "\1\0\1\6\30\0\1\45\42\0\1\16\51\0\1\46"+
+    "\52\0\1\47\2\0\1\50\37\0\1\26\10\0\1\26"+
+    "\1\51\13\26\15\0\2\26\3\0\1\26\10\0\15\26"+
+    "\15\0\2\26\36\0\1\52\47\0\1\53\54\0\1\54"+
+    "\42\0\1\55\47\0\1\56\13\0\4\47\1\0\2\47"+
+    "\2\0\37\47\1\0\1\26\10\0\2\26\1\57\12\26"+
+    "\15\0\2\26\3\0\1\26\10\0\3\26\1\60\11\26"+
+    "\15\0\2\26\3\0\1\26\10\0\4\26\1\61\10\26"+
+    "\15\0\2\26\3\0\1\26\10\0\5\26\1\62\7\26"+
+    "\15\0\2\26\2\0\1\63\1\64\2\63\1\0\2\63"+
+    "\2\0\1\63\15\64\15\63\2\64\2\63\20\0\1\65"+
+    "\30\0\1\26\10\0\6\26\1\66\6\26\15\0\2\26"+
+    "\23\0\1\67\27\0\1\26\10\0\7\26\1\70\5\26"+
+    "\15\0\2\26\17\0\1\71\33\0\1\26\10\0\3\26"+
+    "\1\72\11\26\15\0\2\26\2\0\4\73\1\0\2\73"+
+    "\2\0\40\73\1\74\2\73\1\0\2\73\2\0\1\73"+
+    "\15\74\15\73\2\74\2\73\22\0\1\75\26\0\1\26"+
+    "\10\0\10\26\1\76\4\26\15\0\2\26\25\0\1\77"+
+    "\25\0\1\26\10\0\11\26\1\100\3\26\15\0\2\26"+
+    "\26\0\1\101\24\0\1\26\10\0\12\26\1\102\2\26"+
+    "\15\0\2\26\27\0\1\103\23\0\1\26\10\0\13\26"+
+    "\1\104\1\26\15\0\2\26\17\0\1\105\33\0\1\26"+
+    "\10\0\3\26\1\106\11\26\15\0\2\26\30\0\1\107"+
+    "\22\0\1\26\10\0\14\26\1\110\15\0\2\26\27\0"+
+    "\1\111\23\0\1\26\10\0\13\26\1\112\1\26\15\0"+
+    "\2\26\2\0";
 
   private static int [] zzUnpackTrans() {
-    int [] result = new int[5145];
+    int [] result = new int[1760];
     int offset = 0;
     offset = zzUnpackTrans(ZZ_TRANS_PACKED_0, offset, result);
     return result;
@@ -326,15 +256,15 @@ class Yylex implements java_cup.runtime.Scanner {
   private static final int [] ZZ_ATTRIBUTE = zzUnpackAttribute();
 
   private static final String ZZ_ATTRIBUTE_PACKED_0 =
-    "\1\10\3\0\4\11\1\1\2\11\1\1\1\11\3\1"+
-    "\1\11\1\1\2\11\16\1\5\11\1\1\3\11\4\1"+
-    "\3\11\1\1\1\11\22\1\5\11\62\1\1\0\3\1"+
+    "\1\10\3\0\4\11\1\1\2\11\1\1\1\11\1\1"+
+    "\1\11\1\1\1\11\1\1\2\11\2\1\5\11\1\1"+
+    "\3\11\4\1\3\11\1\1\1\11\1\1\5\11\4\1"+
     "\1\0\1\1\1\0\1\1\1\0\1\1\1\0\1\1"+
     "\1\0\1\1\1\0\1\1\1\0\1\1\1\0\1\1"+
-    "\1\0\1\1\1\0\1\1\1\11\1\1";
+    "\1\0\1\1\1\0\1\1\1\0\1\1\1\11\1\1";
 
   private static int [] zzUnpackAttribute() {
-    int [] result = new int[151];
+    int [] result = new int[74];
     int offset = 0;
     offset = zzUnpackAttribute(ZZ_ATTRIBUTE_PACKED_0, offset, result);
     return result;
@@ -409,6 +339,465 @@ class Yylex implements java_cup.runtime.Scanner {
    */
   private int zzFinalHighSurrogate = 0;
 
+  /* user code: */
+	// All scanner state lives in the instance, so several scanners can
+	// run at the same time on different threads.
+
+	// where the lines of the input start; gives the line of every token
+	private LineMap lines = new LineMap();
+
+	// Columns are counted from columnBase, the offset after the last
+	// column reset, less columnSkew, the characters since then that do
+	// not count: a string literal advances the column by the length of
+	// its value, and an illegal character by 1.
+	private int columnBase;
+	private int columnSkew;
+
+	// text of the string literal being scanned
+	private StringBuilder stringBuf = new StringBuilder();
+
+	// the identifiers seen so far
+	private final IdTable ids = new IdTable();
+
+	// the whole input, if the scanner retains it; token texts are then
+	// slices of it (see retained)
+	private char[] source;
+
+	// where errors are reported; to System.err as it was when the
+	// scanner was created, unless setDiagnostics says otherwise
+	private Diagnostics diagnostics = new Diagnostics(System.err);
+
+	// the table identifiers are interned in; IdTokenVal.id indexes it
+	IdTable ids() {
+		return ids;
+	}
+
+	// the collector errors are reported to; it must be flushed after
+	// scanning
+	Diagnostics diagnostics() {
+		return diagnostics;
+	}
+
+	void setDiagnostics(Diagnostics diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	// what the scanner counts, or null if it does not (see ScanMetrics)
+	private ScanMetrics metrics;
+
+	// Makes the scanner count what it does, reporting it for file.  Must
+	// be called before the first token is scanned.
+	ScanMetrics enableMetrics(String file) {
+		metrics = new ScanMetrics(file, zzBuffer.length);
+		zzReader = metrics.reader(zzReader);
+		return metrics;
+	}
+
+	ScanMetrics metrics() {
+		return metrics;
+	}
+
+	// Returns the next token.  The scanning itself is done by the
+	// generated scanToken(); this only adds the metrics, if enabled.
+	public Symbol next_token() throws java.io.IOException {
+		if (metrics == null)
+			return scanToken();
+		metrics.start(System.nanoTime());
+		Symbol token = scanToken();
+		clock();
+		metrics.token(token.sym, zzBuffer.length);
+		return token;
+	}
+
+	// Switches to lexical state state, adding the time spent in the old
+	// one to the metrics.
+	private void begin(int state) {
+		if (metrics != null)
+			clock();
+		yybegin(state);
+	}
+
+	// Adds the time since the last clock() or start() to the current
+	// lexical state.
+	private void clock() {
+		int state = zzLexicalState == STRING ? ScanMetrics.STRING
+				: zzLexicalState == COMMENT ? ScanMetrics.COMMENT : ScanMetrics.NORMAL;
+		metrics.time(state, System.nanoTime());
+	}
+
+	// if not null, tokens are appended here instead of being returned
+	// as separate Symbol objects (see scanAll)
+	private TokenBuffer tokens;
+
+	// set while advance() scans a token, which is then kept in the
+	// cursor fields instead
+	private boolean cursor;
+	private int cursorKind = sym.EOF;
+	private int cursorLine;
+	private int cursorColumn;
+	private int cursorValue;
+
+	// the Symbol returned for every token while scanning into tokens
+	private final Symbol bulkSymbol = new Symbol(sym.error);
+
+	// offsets of the first character of the last token and of the
+	// character after it, counted from the start of the input
+	private int tokenStart;
+	private int tokenEnd;
+
+	// offset of the opening quote of the string literal being scanned
+	private int stringStart;
+
+	// number of times the column counter was reset to 1
+	private int columnResets;
+
+	int tokenStart() {
+		return tokenStart;
+	}
+
+	int tokenEnd() {
+		return tokenEnd;
+	}
+
+	int columnResets() {
+		return columnResets;
+	}
+
+	// number of tokens scanAll had stored when the column was first
+	// reset, or -1 if it has not been
+	private int resetToken = -1;
+
+	int resetToken() {
+		return resetToken;
+	}
+
+	// the opening quote and the value so far of the string literal being
+	// scanned; ChunkedScanner carries them over into the next chunk
+	int stringStart() {
+		return stringStart;
+	}
+
+	CharSequence stringText() {
+		return stringBuf;
+	}
+
+	// the line starts of the input scanned so far
+	LineMap lines() {
+		return lines;
+	}
+
+	// Makes the scanner continue as if it had just returned a token that
+	// ended on line (counted from 0) and left the next column at charNum.
+	// Used to rescan a document from the middle.
+	void restartAt(int line, int charNum) {
+		lines = new LineMap(line + 1);
+		columnBase = 0;
+		columnSkew = 1 - charNum;
+	}
+
+	// Makes the character at offset base column 1.
+	private void resetColumn(int base) {
+		if (columnResets == 0 && tokens != null)
+			resetToken = tokens.size();
+		columnBase = base;
+		columnSkew = 0;
+		columnResets++;
+	}
+
+	// the column the character at offset would be in, as things stand
+	int columnAt(int offset) {
+		return column(offset);
+	}
+
+	private int column(int offset) {
+		return offset - columnBase + 1 - columnSkew;
+	}
+
+	// Records the line terminators in the current match.
+	private void countLines() {
+		for (int i = zzStartRead; i < zzMarkedPos; i++) {
+			char c = zzBuffer[i];
+			if (c == '\n' || c == '\r')
+				lines.lineEnd(c, yychar + i - zzStartRead + 1);
+		}
+	}
+
+	// Whitespace, string characters and comment text are scanned in
+	// runs: their rules match a single character, and the action extends
+	// the match over the characters that follow with a plain loop over
+	// zzBuffer, instead of one pass of the DFA per character.  A run
+	// stops at the end of the buffer; the rest of it is matched after
+	// the refill.
+
+	// the characters no rule matches (JFlex's line terminators other than
+	// \n and \r, which . excludes)
+	private static boolean unmatched(char c) {
+		return c == '\u000B' || c == '\u000C' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	// Extends the match over spaces, tabs and \n.
+	private void whitespaceRun() {
+		char[] buf = zzBuffer;
+		int end = zzEndRead;
+		int i = zzStartRead;
+		for (; i < end; i++) {
+			char c = buf[i];
+			if (c == '\n')
+				lines.lineEnd(c, yychar + i - zzStartRead + 1);
+			else if (c != ' ' && c != '\t')
+				break;
+		}
+		zzMarkedPos = i;
+	}
+
+	// Extends the match over the characters that stand for themselves in
+	// a string literal, and appends them to stringBuf.
+	private void stringRun() {
+		char[] buf = zzBuffer;
+		int end = zzEndRead;
+		int i = zzMarkedPos;
+		for (; i < end; i++) {
+			char c = buf[i];
+			if (c == '"' || c == '\\' || c == '\n' || c == '\r' || unmatched(c))
+				break;
+		}
+		zzMarkedPos = i;
+		stringBuf.append(buf, zzStartRead, i - zzStartRead);
+	}
+
+	// Extends the match over comment text, up to the next '*'.
+	private void commentRun() {
+		char[] buf = zzBuffer;
+		int end = zzEndRead;
+		char first = buf[zzStartRead];
+		if (first == '\n' || first == '\r')
+			lines.lineEnd(first, yychar + 1);
+		int i = zzMarkedPos;
+		for (; i < end; i++) {
+			char c = buf[i];
+			if (c == '\n' || c == '\r')
+				lines.lineEnd(c, yychar + i - zzStartRead + 1);
+			else if (c == '*' || unmatched(c))
+				break;
+		}
+		zzMarkedPos = i;
+	}
+
+	// Records the extent of a token that starts at offset start and ends
+	// with the current match.  Returns the column of the token.
+	private int extent(int start) {
+		tokenStart = start;
+		tokenEnd = yychar + yylength();
+		return column(start);
+	}
+
+	// Returns the token kind just matched and advances the column.
+	private Symbol token(int kind) {
+		int c = extent(yychar);
+		if (tokens != null || cursor)
+			return bulk(kind, c, 0);
+		return new Symbol(kind, new TokenVal(lines.last(), c));
+	}
+
+	private Symbol intToken(int val) {
+		int c = extent(yychar);
+		if (tokens != null || cursor)
+			return bulk(sym.INTLITERAL, c, val);
+		return new Symbol(sym.INTLITERAL, new IntLitTokenVal(lines.last(), c, val));
+	}
+
+	// Decodes the digits of the current match straight from zzBuffer.  A
+	// literal too large for an int is reported and read as the largest
+	// int.
+	private Symbol intLiteral() {
+		char[] buf = zzBuffer;
+		int end = zzMarkedPos;
+		int val = 0;
+		for (int i = zzStartRead; i < end; i++) {
+			int d = buf[i] - '0';
+			if (val > (Integer.MAX_VALUE - d) / 10) {
+				diagnostics.warn(lines.last(), column(yychar), "integer literal too large; using max value");
+				return intToken(Integer.MAX_VALUE);
+			}
+			val = val * 10 + d;
+		}
+		return intToken(val);
+	}
+
+	// The identifier is interned straight from zzBuffer, or from source,
+	// at the same offset as the token, if the input is retained.
+	private Symbol idToken() {
+		int id = source != null ? ids.intern(source, yychar, yylength())
+				: ids.intern(zzBuffer, zzStartRead, yylength());
+		int c = extent(yychar);
+		if (tokens != null || cursor)
+			return bulk(sym.ID, c, id);
+		return new Symbol(sym.ID, new IdTokenVal(lines.last(), c, id, ids.name(id)));
+	}
+
+	// A string literal is reported at its closing quote and advances the
+	// column by the length of its value.  If the input is retained and
+	// the literal has no escapes (each makes the value one character
+	// shorter than the text between the quotes), the value is a slice;
+	// otherwise a TokenBuffer copies it out of stringBuf.
+	private Symbol stringToken() {
+		int c = extent(stringStart);
+		int len = stringBuf.length();
+		columnSkew += tokenEnd - stringStart - len;
+		boolean slice = source != null && len == tokenEnd - stringStart - 2;
+		if (cursor) {
+			// the value stays in stringBuf until the next literal starts
+			return bulk(sym.STRINGLITERAL, c, 0);
+		}
+		if (tokens != null) {
+			int t = slice ? tokens.addSlice(stringStart + 1, len) : tokens.copyText(stringBuf);
+			stringBuf.setLength(0);
+			return bulk(sym.STRINGLITERAL, c, t);
+		}
+		CharSequence text = slice ? new TextSlice(source, stringStart + 1, len) : stringBuf.toString();
+		stringBuf.setLength(0);
+		return new Symbol(sym.STRINGLITERAL, new StringLitTokenVal(lines.last(), c, text));
+	}
+
+	private Symbol bulk(int kind, int c, int value) {
+		if (cursor) {
+			cursorLine = lines.last();
+			cursorColumn = c;
+			cursorValue = value;
+		} else {
+			tokens.add(kind, lines.last(), c, value);
+		}
+		bulkSymbol.sym = kind;
+		return bulkSymbol;
+	}
+
+	// Scans the rest of the input into buf.  No Symbol or TokenVal is
+	// created per token; the EOF token is not stored.
+	void scanAll(TokenBuffer buf) throws java.io.IOException {
+		buf.setIds(ids);
+		buf.setSource(source);
+		tokens = buf;
+		try {
+			while (next_token().sym != sym.EOF)
+				;
+		} finally {
+			tokens = null;
+		}
+	}
+
+	// Scans up to max more tokens into buf, after the ones it holds.
+	// Returns false once the input is used up.
+	boolean scanSome(TokenBuffer buf, int max) throws java.io.IOException {
+		buf.setIds(ids);
+		buf.setSource(source);
+		tokens = buf;
+		try {
+			for (int n = 0; n < max; n++) {
+				if (next_token().sym == sym.EOF)
+					return false;
+			}
+			return true;
+		} finally {
+			tokens = null;
+		}
+	}
+
+	// Scans the next token, like next_token(), but instead of making a
+	// Symbol for it keeps it in the scanner, where line(), column() and
+	// the rest describe it until the next call.  Returns its kind, or
+	// sym.EOF at the end of the input.  Nothing is allocated per token.
+	int advance() throws java.io.IOException {
+		cursor = true;
+		try {
+			cursorKind = next_token().sym;
+		} finally {
+			cursor = false;
+		}
+		return cursorKind;
+	}
+
+	// the token advance() returned
+	int kind() {
+		return cursorKind;
+	}
+
+	int line() {
+		return cursorLine;
+	}
+
+	int column() {
+		return cursorColumn;
+	}
+
+	// value of an INTLITERAL token
+	int intValue() {
+		return cursorValue;
+	}
+
+	// id of an ID token in ids()
+	int id() {
+		return cursorValue;
+	}
+
+	// Returns the text of an ID or STRINGLITERAL token.  A literal's text
+	// is the scanner's own buffer, which changes once the scanner moves
+	// on; an identifier's is its entry in ids().
+	CharSequence text() {
+		if (cursorKind == sym.ID)
+			return ids.name(cursorValue);
+		return stringBuf;
+	}
+
+	// chars of a mapped file decoded into zzBuffer at a time
+	private static final int MAPPED_BUFFERSIZE = 1 << 16;
+
+	static Yylex mapped(String fileName) throws java.io.IOException {
+		return mapped(fileName, java.nio.charset.Charset.defaultCharset());
+	}
+
+	// Creates a scanner that reads fileName, in charset, through a memory
+	// mapping.  zzBuffer is refilled from the mapping a window at a time,
+	// like from a Reader but in larger pieces, so the heap the scanner
+	// takes does not grow with the file.
+	static Yylex mapped(String fileName, java.nio.charset.Charset charset) throws java.io.IOException {
+		Yylex scanner = new Yylex(new MappedReader(fileName, charset));
+		scanner.zzBuffer = new char[MAPPED_BUFFERSIZE];
+		return scanner;
+	}
+
+	// largest input (in chars) retained() can hold
+	private static final int RETAINED_LIMIT = Integer.MAX_VALUE - 8;
+
+	// Creates a scanner that reads all of in into an array before it
+	// starts, and then scans the array.  zzBuffer is refilled from it as
+	// usual, but the array itself never changes, so identifiers and
+	// string literals come as TextSlices of it, and it lives as long as
+	// any of them.  in is closed.  size is the expected length of the
+	// input in chars; more is read if there is more.
+	static Yylex retained(java.io.Reader in, long size) throws java.io.IOException {
+		char[] buf = new char[(int) Math.min(size, RETAINED_LIMIT - 1) + 1];
+		int n = 0;
+		try {
+			while (true) {
+				if (n == buf.length) {
+					if (n == RETAINED_LIMIT)
+						throw new java.io.IOException("input too large to retain");
+					buf = java.util.Arrays.copyOf(buf, (int) Math.min(2L * n, RETAINED_LIMIT));
+				}
+				int read = in.read(buf, n, buf.length - n);
+				if (read < 0)
+					break;
+				n += read;
+			}
+		} finally {
+			in.close();
+		}
+		Yylex scanner = new Yylex(new java.io.CharArrayReader(buf, 0, n));
+		scanner.source = buf;
+		scanner.ids.useSlices();
+		return scanner;
+	}
+
 
   /**
    * Creates a new scanner
@@ -422,21 +811,55 @@ class Yylex implements java_cup.runtime.Scanner {
 
 
   /** 
-   * Unpacks the compressed character translation table.
+   * Unpacks the compressed character translation table into blocks
+   * of 256 entries, storing the number of each block in top.
    *
    * @param packed   the packed character translation table
-   * @return         the unpacked character translation table
+   * @param top      receives the block number of every block
+   * @return         the different blocks
    */
-  private static char [] zzUnpackCMap(String packed) {
-    char [] map = new char[0x110000];
-    int i = 0;  /* index in packed string  */
-    int j = 0;  /* index in unpacked array */
-    while (i < 172) {
-      int  count = packed.charAt(i++);
-      char value = packed.charAt(i++);
-      do map[j++] = value; while (--count > 0);
+  private static char [] zzUnpackCMap(String packed, char [] top) {
+    char [] blocks = new char[4 << 8];
+    int count = 0;       /* number of different blocks */
+    char [] block = new char[256];
+    int uniformValue = -1;  /* value and number of the last block */
+    int uniformBlock = 0;   /* that was filled by one run         */
+    int j = 0;           /* code point */
+    for (int i = 0; i < packed.length(); i += 2) {
+      int run = packed.charAt(i);
+      char value = packed.charAt(i + 1);
+      while (run > 0) {
+        if ((j & 0xff) == 0 && run >= 256 && value == uniformValue) {
+          top[j >> 8] = (char) uniformBlock;
+          j += 256;
+          run -= 256;
+          continue;
+        }
+        boolean uniform = (j & 0xff) == 0 && run >= 256;
+        int n = Math.min(run, 256 - (j & 0xff));
+        java.util.Arrays.fill(block, j & 0xff, (j & 0xff) + n, value);
+        j += n;
+        run -= n;
+        if ((j & 0xff) != 0)
+          continue;
+        /* block complete: find it or add it */
+        int b = 0;
+        while (b < count && !java.util.Arrays.equals(blocks, b << 8, (b + 1) << 8, block, 0, 256))
+          b++;
+        if (b == count) {
+          if (count << 8 == blocks.length)
+            blocks = java.util.Arrays.copyOf(blocks, blocks.length * 2);
+          System.arraycopy(block, 0, blocks, count << 8, 256);
+          count++;
+        }
+        top[(j >> 8) - 1] = (char) b;
+        if (uniform) {
+          uniformValue = value;
+          uniformBlock = b;
+        }
+      }
     }
-    return map;
+    return java.util.Arrays.copyOf(blocks, count << 8);
   }
 
 
@@ -641,7 +1064,7 @@ class Yylex implements java_cup.runtime.Scanner {
    * @return      the next token
    * @exception   java.io.IOException  if any I/O-Error occurs
    */
-  public java_cup.runtime.Symbol next_token() throws java.io.IOException {
+  public java_cup.runtime.Symbol scanToken() throws java.io.IOException {
     int zzInput;
     int zzAction;
 
@@ -650,7 +1073,8 @@ class Yylex implements java_cup.runtime.Scanner {
     int zzMarkedPosL;
     int zzEndReadL = zzEndRead;
     char [] zzBufferL = zzBuffer;
-    char [] zzCMapL = ZZ_CMAP;
+    char [] zzCMapTopL = ZZ_CMAP_TOP;
+    char [] zzCMapBlocksL = ZZ_CMAP_BLOCKS;
 
     int [] zzTransL = ZZ_TRANS;
     int [] zzRowMapL = ZZ_ROWMAP;
@@ -659,58 +1083,8 @@ class Yylex implements java_cup.runtime.Scanner {
     while (true) {
       zzMarkedPosL = zzMarkedPos;
 
-      boolean zzR = false;
-      int zzCh;
-      int zzCharCount;
-      for (zzCurrentPosL = zzStartRead  ;
-           zzCurrentPosL < zzMarkedPosL ;
-           zzCurrentPosL += zzCharCount ) {
-        zzCh = Character.codePointAt(zzBufferL, zzCurrentPosL, zzMarkedPosL);
-        zzCharCount = Character.charCount(zzCh);
-        switch (zzCh) {
-        case '\u000B':  // fall through
-        case '\u000C':  // fall through
-        case '\u0085':  // fall through
-        case '\u2028':  // fall through
-        case '\u2029':
-          yyline++;
-          zzR = false;
-          break;
-        case '\r':
-          yyline++;
-          zzR = true;
-          break;
-        case '\n':
-          if (zzR)
-            zzR = false;
-          else {
-            yyline++;
-          }
-          break;
-        default:
-          zzR = false;
-        }
-      }
+      yychar+= zzMarkedPosL-zzStartRead;
 
-      if (zzR) {
-        // peek one character ahead if it is \n (if we have counted one line too much)
-        boolean zzPeek;
-        if (zzMarkedPosL < zzEndReadL)
-          zzPeek = zzBufferL[zzMarkedPosL] == '\n';
-        else if (zzAtEOF)
-          zzPeek = false;
-        else {
-          boolean eof = zzRefill();
-          zzEndReadL = zzEndRead;
-          zzMarkedPosL = zzMarkedPos;
-          zzBufferL = zzBuffer;
-          if (eof) 
-            zzPeek = false;
-          else 
-            zzPeek = zzBufferL[zzMarkedPosL] == '\n';
-        }
-        if (zzPeek) yyline--;
-      }
       zzAction = -1;
 
       zzCurrentPosL = zzCurrentPos = zzStartRead = zzMarkedPosL;
@@ -754,7 +1128,7 @@ class Yylex implements java_cup.runtime.Scanner {
               zzCurrentPosL += Character.charCount(zzInput);
             }
           }
-          int zzNext = zzTransL[ zzRowMapL[zzState] + zzCMapL[zzInput] ];
+          int zzNext = zzTransL[ zzRowMapL[zzState] + zzCMapBlocksL[zzInput < 256 ? zzInput : (zzCMapTopL[zzInput >> 8] << 8) | (zzInput & 0xff)] ];
           if (zzNext == -1) break zzForAction;
           zzState = zzNext;
 
@@ -779,363 +1153,201 @@ class Yylex implements java_cup.runtime.Scanner {
       else {
         switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
           case 1: 
-            { StringHelper.sb.append(yytext());
+            { stringRun();
             } 
             // fall through
-          case 54: break;
+          case 38: break;
           case 2: 
-            { StringHelper.sb.append("\n");
+            { countLines();
+		stringBuf.append("\n");
             } 
             // fall through
-          case 55: break;
+          case 39: break;
           case 3: 
-            { String str = StringHelper.sb.toString();
-		Symbol S = new Symbol(sym.STRINGLITERAL, new StringLitTokenVal(yyline+1, CharNum.num, str));
-		CharNum.num += str.length();
-		StringHelper.sb.setLength(0);
-		yybegin( NORMAL );
-		return S;
+            { begin( NORMAL );
+		return stringToken();
             } 
             // fall through
-          case 56: break;
+          case 40: break;
           case 4: 
-            { StringHelper.sb.append("\r");
+            { countLines();
+		stringBuf.append("\r");
             } 
             // fall through
-          case 57: break;
+          case 41: break;
           case 5: 
-            { StringHelper.sb.append("\t");
+            { stringBuf.append("\t");
             } 
             // fall through
-          case 58: break;
+          case 42: break;
           case 6: 
-            { 
+            { commentRun();
             } 
             // fall through
-          case 59: break;
+          case 43: break;
           case 7: 
-            { Errors.fatal(yyline+1, CharNum.num, "ignoring illegal character: " + yytext());
-	    CharNum.num++;
+            { diagnostics.fatal(lines.last(), column(yychar), "ignoring illegal character", zzBuffer, zzStartRead, yylength());
+	    columnSkew += yylength() - 1;
             } 
             // fall through
-          case 60: break;
+          case 44: break;
           case 8: 
-            { int val = 0;
-		try {
-			val = Integer.parseInt(yytext());
-		} catch(Exception e) {
-			System.out.println("Overflow");
-		}
-		Symbol S = new Symbol(sym.INTLITERAL, new IntLitTokenVal(yyline+1, CharNum.num, val));
-		CharNum.num += yytext().length();
-		return S;
+            { return intLiteral();
             } 
             // fall through
-          case 61: break;
+          case 45: break;
           case 9: 
-            { CharNum.num += yytext().length();
+            { whitespaceRun();
             } 
             // fall through
-          case 62: break;
+          case 46: break;
           case 10: 
-            { CharNum.num = 1;
+            { countLines();
+		resetColumn(yychar + 1);
             } 
             // fall through
-          case 63: break;
+          case 47: break;
           case 11: 
-            { yybegin( STRING );
+            { stringStart = yychar;
+			stringBuf.setLength(0);
+			begin( STRING );
             } 
             // fall through
-          case 64: break;
+          case 48: break;
           case 12: 
-            { Symbol S = new Symbol(sym.DIVIDE, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.DIVIDE);
             } 
             // fall through
-          case 65: break;
+          case 49: break;
           case 13: 
-            { Symbol S = new Symbol(sym.TIMES, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.TIMES);
             } 
             // fall through
-          case 66: break;
+          case 50: break;
           case 14: 
-            { Symbol S = new Symbol(sym.ID, new IdTokenVal(yyline+1, CharNum.num, yytext()));
-		CharNum.num += yytext().length();
-		return S;
+            { int kind = Keywords.lookup(zzBuffer, zzStartRead, yylength());
+		if (kind != sym.ID)
+			return token(kind);
+		return idToken();
             } 
             // fall through
-          case 67: break;
+          case 51: break;
           case 15: 
-            { Symbol S = new Symbol(sym.LCURLY, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.LCURLY);
             } 
             // fall through
-          case 68: break;
+          case 52: break;
           case 16: 
-            { Symbol S = new Symbol(sym.RCURLY, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.RCURLY);
             } 
             // fall through
-          case 69: break;
+          case 53: break;
           case 17: 
-            { Symbol S = new Symbol(sym.LPAREN, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.LPAREN);
             } 
             // fall through
-          case 70: break;
+          case 54: break;
           case 18: 
-            { Symbol S = new Symbol(sym.RPAREN, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.RPAREN);
             } 
             // fall through
-          case 71: break;
+          case 55: break;
           case 19: 
-            { Symbol S = new Symbol(sym.COMMA, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.COMMA);
             } 
             // fall through
-          case 72: break;
+          case 56: break;
           case 20: 
-            { Symbol S = new Symbol(sym.ASSIGN, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.ASSIGN);
             } 
             // fall through
-          case 73: break;
+          case 57: break;
           case 21: 
-            { Symbol S = new Symbol(sym.SEMICOLON, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.SEMICOLON);
             } 
             // fall through
-          case 74: break;
+          case 58: break;
           case 22: 
-            { Symbol S = new Symbol(sym.PLUS, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.PLUS);
             } 
             // fall through
-          case 75: break;
+          case 59: break;
           case 23: 
-            { Symbol S = new Symbol(sym.MINUS, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.MINUS);
             } 
             // fall through
-          case 76: break;
+          case 60: break;
           case 24: 
-            { Symbol S = new Symbol(sym.NOT, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.NOT);
             } 
             // fall through
-          case 77: break;
+          case 61: break;
           case 25: 
-            { Symbol S = new Symbol(sym.LESS, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.LESS);
             } 
             // fall through
-          case 78: break;
+          case 62: break;
           case 26: 
-            { Symbol S = new Symbol(sym.GREATER, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num++;
-		return S;
+            { return token(sym.GREATER);
             } 
             // fall through
-          case 79: break;
+          case 63: break;
           case 27: 
-            { StringHelper.sb.append("\"");
+            { stringBuf.append("\"");
             } 
             // fall through
-          case 80: break;
+          case 64: break;
           case 28: 
-            { yybegin( NORMAL );
+            { resetColumn(yychar + yylength());
+		begin( NORMAL );
             } 
             // fall through
-          case 81: break;
+          case 65: break;
           case 29: 
-            { Symbol S = new Symbol(sym.OR, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { return token(sym.OR);
             } 
             // fall through
-          case 82: break;
+          case 66: break;
           case 30: 
-            { CharNum.num = 1;
-		yybegin ( COMMENT );
+            { resetColumn(yychar + yylength());
             } 
             // fall through
-          case 83: break;
+          case 67: break;
           case 31: 
-            { Symbol S = new Symbol(sym.IF, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { begin( COMMENT );
             } 
             // fall through
-          case 84: break;
+          case 68: break;
           case 32: 
-            { Symbol S = new Symbol(sym.DO, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { return token(sym.EQUALS);
             } 
             // fall through
-          case 85: break;
+          case 69: break;
           case 33: 
-            { Symbol S = new Symbol(sym.EQUALS, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { return token(sym.NOTEQUALS);
             } 
             // fall through
-          case 86: break;
+          case 70: break;
           case 34: 
-            { Symbol S = new Symbol(sym.NOTEQUALS, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { return token(sym.AND);
             } 
             // fall through
-          case 87: break;
+          case 71: break;
           case 35: 
-            { Symbol S = new Symbol(sym.AND, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { return token(sym.LESSEQ);
             } 
             // fall through
-          case 88: break;
+          case 72: break;
           case 36: 
-            { Symbol S = new Symbol(sym.LESSEQ, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { return token(sym.GREATEREQ);
             } 
             // fall through
-          case 89: break;
+          case 73: break;
           case 37: 
-            { Symbol S = new Symbol(sym.GREATEREQ, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 2;
-		return S;
+            { return token(sym.PRINT);
             } 
             // fall through
-          case 90: break;
-          case 38: 
-            { Symbol S = new Symbol(sym.INT, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 3;
-		return S;
-            } 
-            // fall through
-          case 91: break;
-          case 39: 
-            { Symbol S = new Symbol(sym.TRUE, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 4;
-		return S;
-            } 
-            // fall through
-          case 92: break;
-          case 40: 
-            { Symbol S = new Symbol(sym.ELSE, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 4;
-		return S;
-            } 
-            // fall through
-          case 93: break;
-          case 41: 
-            { Symbol S = new Symbol(sym.CASE, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 4;
-		return S;
-            } 
-            // fall through
-          case 94: break;
-          case 42: 
-            { Symbol S = new Symbol(sym.VOID, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 4;
-		return S;
-            } 
-            // fall through
-          case 95: break;
-          case 43: 
-            { Symbol S = new Symbol(sym.CLASS, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 5;
-		return S;
-            } 
-            // fall through
-          case 96: break;
-          case 44: 
-            { Symbol S = new Symbol(sym.FALSE, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 5;
-		return S;
-            } 
-            // fall through
-          case 97: break;
-          case 45: 
-            { Symbol S = new Symbol(sym.WHILE, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 5;
-		return S;
-            } 
-            // fall through
-          case 98: break;
-          case 46: 
-            { Symbol S = new Symbol(sym.STRING, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 6;
-		return S;
-            } 
-            // fall through
-          case 99: break;
-          case 47: 
-            { Symbol S = new Symbol(sym.RETURN, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 6;
-		return S;
-            } 
-            // fall through
-          case 100: break;
-          case 48: 
-            { Symbol S = new Symbol(sym.STATIC, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 6;
-		return S;
-            } 
-            // fall through
-          case 101: break;
-          case 49: 
-            { Symbol S = new Symbol(sym.SWITCH, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 6;
-		return S;
-            } 
-            // fall through
-          case 102: break;
-          case 50: 
-            { Symbol S = new Symbol(sym.PUBLIC, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 6;
-		return S;
-            } 
-            // fall through
-          case 103: break;
-          case 51: 
-            { Symbol S = new Symbol(sym.BOOLEAN, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 7;
-		return S;
-            } 
-            // fall through
-          case 104: break;
-          case 52: 
-            { Symbol S = new Symbol(sym.DEFAULT, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 7;
-		return S;
-            } 
-            // fall through
-          case 105: break;
-          case 53: 
-            { Symbol S = new Symbol(sym.PRINT, new TokenVal(yyline+1, CharNum.num));
-		CharNum.num += 18;
-		return S;
-            } 
-            // fall through
-          case 106: break;
+          case 74: break;
           default:
             zzScanError(ZZ_NO_MATCH);
         }